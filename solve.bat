@@ -0,0 +1,3 @@
+del /s /q *.class
+javac -XDstringConcat=inline src/main/Cli.java -cp src
+java -classpath src main.Cli %*
\ No newline at end of file
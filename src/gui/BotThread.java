@@ -1,6 +1,10 @@
 package gui;
 
+import java.util.concurrent.CompletableFuture;
+
+import solver.SearchProgress;
 import solver.SokoBot;
+import solver.SolverConfig;
 
 public class BotThread extends Thread {
   private SokoBot sokoBot;
@@ -9,6 +13,12 @@ public class BotThread extends Thread {
   private char[][] mapData;
   private char[][] itemsData;
 
+  private SolverConfig config = new SolverConfig();
+  private SearchProgress progress = new SearchProgress();
+
+  // Completed with the solution (null if there is none) when the bot is done
+  private CompletableFuture<String> result = new CompletableFuture<>();
+
   private String solution = null;
 
   public BotThread(int width, int height, char[][] mapData, char[][] itemsData) {
@@ -17,14 +27,28 @@ public class BotThread extends Thread {
     this.height = height;
     this.mapData = mapData;
     this.itemsData = itemsData;
+    this.config.progress = progress;
   }
 
   @Override
   public void run() {
-    solution = sokoBot.solveSokobanPuzzle(width, height, mapData, itemsData);
+    try {
+      solution = sokoBot.solveSokobanPuzzle(width, height, mapData, itemsData, config);
+      result.complete(solution);
+    } catch (Throwable ex) {
+      result.completeExceptionally(ex);
+    }
   }
 
   public String getSolution() {
     return solution;
   }
+
+  public CompletableFuture<String> getResult() {
+    return result;
+  }
+
+  public SearchProgress getProgress() {
+    return progress;
+  }
 }
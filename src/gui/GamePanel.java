@@ -9,11 +9,23 @@ import java.awt.event.KeyEvent;
 import java.awt.event.ActionEvent;
 import java.awt.image.BufferedImage;
 import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.AlphaComposite;
+import java.awt.Composite;
+import java.awt.Rectangle;
 import javax.swing.Timer;
+import javax.swing.SwingUtilities;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.imageio.ImageIO;
 import reader.MapData;
+import solver.HintSession;
+import solver.SearchProgress;
+import solver.SolverConfig;
 
 public class GamePanel extends JPanel implements KeyListener, ActionListener {
 
@@ -34,6 +46,14 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
   private final int UPPER_LEFT_X = 10;
   private final int UPPER_LEFT_Y = 10;
   private final int TILE_SIZE = 32;
+  private final int STATUS_BAR_HEIGHT = 32;
+
+  // Walls and goals never move, so they are drawn once into this image
+  private BufferedImage staticLayer;
+
+  // Tiles changed since the last paint; more than this many and the whole panel is repainted
+  private ArrayList<Rectangle> dirtyTiles = new ArrayList<>();
+  private final int MAX_DIRTY_TILES = 64;
 
   private boolean freePlay = false;
   private boolean waitingForSpace = false;
@@ -41,6 +61,8 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
   private int solutionCtr = -1;
 
   private Timer animationTimer;
+  private int movesPerFrame = 1;
+  private final int MAX_MOVES_PER_FRAME = 1 << 16;
 
   private Font statusFont;
   private Font statusValueFont;
@@ -63,11 +85,24 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
 
   private BotThread solutionThread;
   private Timer solutionTimer;
-  private Timer checkForSolutionTimer;
+  private Timer searchProgressTimer;
+  private SearchProgress.Snapshot ghost;
   private long solutionStartTime;
   private long solutionEndTime;
 
+  // Free play hints: one session per level, only used on the hint thread. A hint that comes
+  // back after a newer move was made is dropped
+  private HintSession hintSession;
+  private final ExecutorService hintThread = Executors.newSingleThreadExecutor(task -> {
+    Thread thread = new Thread(task, "hints");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private final AtomicInteger hintRequest = new AtomicInteger();
+  private final String[] HINT_WORDS = { "up", "down", "left", "right" };
+
   private final int SOLUTION_TIME_LIMIT = 15000;
+  private final float GHOST_ALPHA = 0.4f;
 
   public GamePanel() {
     this.setBackground(Color.BLACK);
@@ -153,33 +188,54 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
     if (playerCount == 1 && boxCount == goalCount && boxCount > 0) {
       freePlay = false;
       mapLoaded = true;
+      renderStaticLayer();
       this.repaint();
     }
   }
 
+  private void renderStaticLayer() {
+    staticLayer = new BufferedImage(columns * TILE_SIZE, rows * TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = staticLayer.createGraphics();
+    g.setColor(Color.BLACK);
+    g.fillRect(0, 0, staticLayer.getWidth(), staticLayer.getHeight());
+
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        BufferedImage target = null;
+        if (map[i][j] == '#') {
+          target = BRICK_SPRITE;
+        } else if (map[i][j] == '.') {
+          target = GOAL_SPRITE;
+        }
+        if (target != null) {
+          g.drawImage(target, j * TILE_SIZE, i * TILE_SIZE, TILE_SIZE, TILE_SIZE, null);
+        }
+      }
+    }
+    g.dispose();
+  }
+
   @Override
   public void paintComponent(Graphics g) {
     super.paintComponent(g);
 
-    g.clearRect(0, 0, this.getWidth(), this.getHeight());
-    g.setColor(Color.BLACK);
-    g.fillRect(0, 0, this.getWidth(), this.getHeight());
-
     if (mapLoaded) {
-      for (int i = 0; i < rows; i++) {
-        for (int j = 0; j < columns; j++) {
+      Rectangle clip = g.getClipBounds();
+      if (clip == null) {
+        clip = new Rectangle(0, 0, this.getWidth(), this.getHeight());
+      }
+
+      g.drawImage(staticLayer, UPPER_LEFT_X, UPPER_LEFT_Y, this);
+
+      // Only the tiles inside the clip get their crate or player redrawn
+      int firstRow = Math.max(0, (clip.y - UPPER_LEFT_Y) / TILE_SIZE);
+      int lastRow = Math.min(rows - 1, (clip.y + clip.height - UPPER_LEFT_Y) / TILE_SIZE);
+      int firstColumn = Math.max(0, (clip.x - UPPER_LEFT_X) / TILE_SIZE);
+      int lastColumn = Math.min(columns - 1, (clip.x + clip.width - UPPER_LEFT_X) / TILE_SIZE);
+
+      for (int i = firstRow; i <= lastRow; i++) {
+        for (int j = firstColumn; j <= lastColumn; j++) {
           BufferedImage target = null;
-          if (map[i][j] == '#') {
-            target = BRICK_SPRITE;
-          } else if (map[i][j] == '.') {
-            target = GOAL_SPRITE;
-          }
-          if (target != null) {
-            g.drawImage(target, UPPER_LEFT_X + j * TILE_SIZE,
-                UPPER_LEFT_Y + i * TILE_SIZE, TILE_SIZE, TILE_SIZE,
-                this);
-          }
-          target = null;
           if (items[i][j] == '$' && map[i][j] == '.') {
             target = CRATE_ON_GOAL_SPRITE;
           } else if (items[i][j] == '$' && map[i][j] != '.') {
@@ -195,26 +251,121 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
         }
       }
 
-      g.setColor(new Color(150, 214, 124));
-      g.fillRect(0, this.getHeight() - 32, this.getWidth(), 32);
-      g.setColor(Color.RED);
-      g.setFont(this.statusFont);
-      g.drawString(this.statusString, this.getWidth() - 375, this.getHeight() - 12);
-      g.setColor(Color.BLACK);
-      g.setFont(this.statusFont);
-      g.drawString("MOVES: ", 8, this.getHeight() - 12);
-      g.drawString("PROGRESS: ", 176, this.getHeight() - 12);
-      g.setFont(this.statusValueFont);
-      g.drawString("" + moves, 80, this.getHeight() - 12);
-      g.drawString(progress + " / " + boxCount, 286, this.getHeight() - 12);
-      g.drawString(this.solutionTimeString, this.getWidth() - 60, this.getHeight() - 12);
+      if (ghost != null) {
+        paintGhost((Graphics2D) g, ghost);
+      }
+
+      if (clip.intersects(statusBarBounds())) {
+        paintStatusBar(g);
+      }
+    }
+  }
+
+  private void paintStatusBar(Graphics g) {
+    g.setColor(new Color(150, 214, 124));
+    g.fillRect(0, this.getHeight() - STATUS_BAR_HEIGHT, this.getWidth(), STATUS_BAR_HEIGHT);
+    g.setColor(Color.RED);
+    g.setFont(this.statusFont);
+    g.drawString(this.statusString, this.getWidth() - 375, this.getHeight() - 12);
+    g.setColor(Color.BLACK);
+    g.setFont(this.statusFont);
+    g.drawString("MOVES: ", 8, this.getHeight() - 12);
+    g.drawString("PROGRESS: ", 176, this.getHeight() - 12);
+    g.setFont(this.statusValueFont);
+    g.drawString("" + moves, 80, this.getHeight() - 12);
+    g.drawString(progress + " / " + boxCount, 286, this.getHeight() - 12);
+    g.drawString(this.solutionTimeString, this.getWidth() - 60, this.getHeight() - 12);
+  }
+
+  // Draws the best state the running search has found so far over the board, half transparent
+  private void paintGhost(Graphics2D g, SearchProgress.Snapshot snapshot) {
+    Composite composite = g.getComposite();
+    g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, GHOST_ALPHA));
+    for (int i = 0; i < snapshot.boxRows.length; i++) {
+      g.drawImage(CRATE_SPRITE, UPPER_LEFT_X + snapshot.boxCols[i] * TILE_SIZE,
+          UPPER_LEFT_Y + snapshot.boxRows[i] * TILE_SIZE, TILE_SIZE, TILE_SIZE, this);
     }
+    g.drawImage(PLAYER_SPRITE, UPPER_LEFT_X + snapshot.playerCol * TILE_SIZE,
+        UPPER_LEFT_Y + snapshot.playerRow * TILE_SIZE, TILE_SIZE, TILE_SIZE, this);
+    g.setComposite(composite);
+
+    g.setColor(Color.LIGHT_GRAY);
+    g.setFont(this.statusValueFont);
+    g.drawString("best h: " + snapshot.bestHeuristic + "   f: " + snapshot.fBound
+        + "   frontier: " + snapshot.frontierSize + "   expanded: " + snapshot.expanded,
+        8, this.getHeight() - STATUS_BAR_HEIGHT - 10);
+  }
+
+  private Rectangle statusBarBounds() {
+    return new Rectangle(0, this.getHeight() - STATUS_BAR_HEIGHT, this.getWidth(), STATUS_BAR_HEIGHT);
+  }
+
+  private void markDirty(int row, int column) {
+    dirtyTiles.add(new Rectangle(UPPER_LEFT_X + column * TILE_SIZE, UPPER_LEFT_Y + row * TILE_SIZE,
+        TILE_SIZE, TILE_SIZE));
+  }
+
+  // Paints the changed tiles and the status bar right away, each as its own small region, since
+  // repaint() would merge them into one rectangle spanning the whole panel
+  private void flushDirty() {
+    if (dirtyTiles.size() > MAX_DIRTY_TILES || !this.isShowing()) {
+      this.repaint();
+    } else {
+      for (Rectangle tile : dirtyTiles) {
+        this.paintImmediately(tile);
+      }
+      this.paintImmediately(statusBarBounds());
+    }
+    dirtyTiles.clear();
   }
 
   public void initiateFreePlay() {
     this.statusString = STATUS_FREE_PLAY;
     waitingForSpace = false;
     freePlay = true;
+
+    if (mapLoaded) {
+      SolverConfig config = new SolverConfig();
+      config.timeLimitMillis = SOLUTION_TIME_LIMIT;
+      hintSession = new HintSession(columns, rows, copyOf(map), copyOf(items), config);
+      requestHint();
+    }
+  }
+
+  // Asks the hint thread for the next move from the current position
+  private void requestHint() {
+    HintSession session = hintSession;
+    if (session == null) {
+      return;
+    }
+    char[][] position = copyOf(items);
+    int request = hintRequest.incrementAndGet();
+    hintThread.execute(() -> {
+      if (request != hintRequest.get()) {
+        return;
+      }
+      HintSession.Hint hint = session.hint(position);
+      SwingUtilities.invokeLater(() -> {
+        if (request != hintRequest.get() || !freePlay) {
+          return;
+        }
+        if (hint.move != 0) {
+          this.statusString = STATUS_FREE_PLAY + " HINT: " + HINT_WORDS["udlr".indexOf(hint.move)];
+        } else {
+          // No hint when solved, or when the search ran out of time without an answer
+          this.statusString = STATUS_FREE_PLAY + ("dead".equals(hint.source) ? " HINT: stuck" : "");
+        }
+        this.repaint(statusBarBounds());
+      });
+    });
+  }
+
+  private char[][] copyOf(char[][] layer) {
+    char[][] copy = new char[rows][];
+    for (int i = 0; i < rows; i++) {
+      copy[i] = layer[i].clone();
+    }
+    return copy;
   }
 
   public void initiateSolution() {
@@ -260,6 +411,8 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
     if (map[ptRow][ptCol] == '#') {
       return;
     }
+    int oldRow = playerRow;
+    int oldColumn = playerColumn;
     if (items[ptRow][ptCol] != '$') {
       items[playerRow][playerColumn] = ' ';
       items[ptRow][ptCol] = '@';
@@ -281,13 +434,14 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
       items[btRow][btCol] = '$';
       items[playerRow][playerColumn] = ' ';
       items[ptRow][ptCol] = '@';
+      markDirty(btRow, btCol);
       playerRow = ptRow;
       playerColumn = ptCol;
     }
 
+    markDirty(oldRow, oldColumn);
+    markDirty(playerRow, playerColumn);
     moves++;
-
-    this.repaint();
   }
 
   @Override
@@ -307,6 +461,26 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
           executeMove(3);
           break;
       }
+      if (!dirtyTiles.isEmpty()) {
+        requestHint();
+      }
+      flushDirty();
+    } else if (animationTimer != null && animationTimer.isRunning()) {
+      // Playback speed: + / - double or halve the moves per frame, END jumps to the end
+      switch (e.getKeyCode()) {
+        case KeyEvent.VK_PLUS:
+        case KeyEvent.VK_EQUALS:
+        case KeyEvent.VK_ADD:
+          movesPerFrame = Math.min(MAX_MOVES_PER_FRAME, movesPerFrame * 2);
+          break;
+        case KeyEvent.VK_MINUS:
+        case KeyEvent.VK_SUBTRACT:
+          movesPerFrame = Math.max(1, movesPerFrame / 2);
+          break;
+        case KeyEvent.VK_END:
+          skipToEnd();
+          break;
+      }
     } else if (waitingForSpace) {
       if (e.getKeyCode() == KeyEvent.VK_SPACE) {
         waitingForSpace = false;
@@ -323,12 +497,16 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
         }
 
         solutionThread = new BotThread(columns, rows, mapDataCopy, itemsDataCopy);
-        solutionThread.start();
         solutionStartTime = System.nanoTime();
         solutionTimer = new Timer(SOLUTION_TIME_LIMIT, this);
         solutionTimer.start();
-        checkForSolutionTimer = new Timer(30, this);
-        checkForSolutionTimer.start();
+        searchProgressTimer = new Timer(30, this);
+        searchProgressTimer.start();
+
+        // The bot thread completes the future; the result is handed back to the event thread
+        solutionThread.getResult().whenComplete((solution, error) ->
+            SwingUtilities.invokeLater(() -> solutionFinished(solution, error)));
+        solutionThread.start();
 
         this.repaint();
       }
@@ -350,53 +528,87 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
   }
 
   public void playSolution(String solutionString, int delay) {
+    playSolution(solutionString, delay, 1);
+  }
+
+  // Plays movesPerFrame moves on every timer tick and paints once per tick, so long solutions
+  // can be replayed at 1ms per frame or faster than one move per frame
+  public void playSolution(String solutionString, int delay, int movesPerFrame) {
     freePlay = false;
     this.statusString = STATUS_PLAYING_SOLUTION;
     this.solutionString = solutionString;
     this.solutionCtr = 0;
+    this.movesPerFrame = Math.max(1, movesPerFrame);
     this.animationTimer = new Timer(delay, this);
     this.animationTimer.start();
   }
 
+  // Plays the rest of the solution in the next frame
+  public void skipToEnd() {
+    movesPerFrame = Math.max(1, solutionString.length() - solutionCtr);
+  }
+
+  private void playNextMove() {
+    int nextMove = this.solutionString.charAt(this.solutionCtr++);
+    switch (nextMove) {
+      case 'u':
+        executeMove(0);
+        break;
+      case 'd':
+        executeMove(1);
+        break;
+      case 'l':
+        executeMove(2);
+        break;
+      case 'r':
+        executeMove(3);
+        break;
+    }
+  }
+
+  // Runs on the event thread once the bot thread is done
+  private void solutionFinished(String solution, Throwable error) {
+    if (!solutionTimer.isRunning()) {
+      // Time was already up
+      return;
+    }
+    solutionTimer.stop();
+    searchProgressTimer.stop();
+    ghost = null;
+    if (error != null) {
+      error.printStackTrace(System.err);
+    }
+    this.playSolution(solution == null ? "" : solution);
+    this.repaint();
+  }
+
   @Override
   public void actionPerformed(ActionEvent e) {
     if (e.getSource() == animationTimer) {
+      for (int i = 0; i < movesPerFrame && this.solutionCtr < this.solutionString.length(); i++) {
+        playNextMove();
+      }
       if (this.solutionCtr >= this.solutionString.length()) {
         this.animationTimer.stop();
         this.statusString = STATUS_FINISHED_PLAYING_SOLUTION;
-        this.repaint();
-        return;
-      }
-      int nextMove = this.solutionString.charAt(this.solutionCtr++);
-      switch (nextMove) {
-        case 'u':
-          executeMove(0);
-          break;
-        case 'd':
-          executeMove(1);
-          break;
-        case 'l':
-          executeMove(2);
-          break;
-        case 'r':
-          executeMove(3);
-          break;
-      }
-    } else if (e.getSource() == checkForSolutionTimer) {
-      if (!solutionThread.isAlive()) {
-        // Solution was found
-        solutionTimer.stop();
-        checkForSolutionTimer.stop();
-        String solution = solutionThread.getSolution();
-        this.playSolution(solution);
       }
+      flushDirty();
+    } else if (e.getSource() == searchProgressTimer) {
+      // Only refreshes the clock and the ghost; the solution arrives through solutionFinished
       long elapsedSolutionTime = System.nanoTime() - solutionStartTime;
       this.solutionTimeString = String.format("%.2f", elapsedSolutionTime / 1000000000.0) + "s";
-      this.repaint();
+      SearchProgress.Snapshot latest = solutionThread.getProgress().latest();
+      if (latest != ghost) {
+        ghost = latest;
+        this.repaint();
+      } else {
+        this.repaint(statusBarBounds());
+      }
     } else if (e.getSource() == solutionTimer) {
       // Solution was not found
       solutionTimer.stop();
-      checkForSolutionTimer.stop();
+      searchProgressTimer.stop();
+      ghost = null;
       long elapsedSolutionTime = System.nanoTime() - solutionStartTime;
       this.solutionTimeString = String.format("%.2f", elapsedSolutionTime / 1000000000.0);
       this.statusString = STATUS_SOLUTION_TIMEOUT;
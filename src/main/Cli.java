@@ -0,0 +1,178 @@
+package main;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import reader.FileReader;
+import reader.MapData;
+import solver.Board;
+import solver.DifficultyEstimate;
+import solver.SokoBot;
+import solver.SolverConfig;
+
+// Headless entry point: solves levels and prints each solution with its stats. Nothing here
+// touches AWT or Swing, and nothing is looked up by reflection, so the JVM stays small at
+// startup and the class list works for an AppCDS archive or a native image.
+//
+// Usage: java -cp src main.Cli [options] level...
+//   a level is a map name from maps/ ( "threeboxes1" ) or a path to a level file
+//
+// Compiling with -XDstringConcat=inline keeps string concatenation off invokedynamic. For an
+// AppCDS archive, put the classes in a jar and run it once with
+// -XX:ArchiveClassesAtExit=cli.jsa, then start with -XX:SharedArchiveFile=cli.jsa.
+public class Cli {
+  private static final String USAGE = String.join("\n",
+      "usage: java -cp src main.Cli [options] level...",
+      "  -m, --mode <mode>         astar, push-astar, greedy, beam, decompose, external-bfs,",
+      "                            external-astar, distributed, optimal-moves, optimal-pushes, tuned",
+      "  -t, --time <seconds>      give up on a level after this long",
+      "  -n, --max-expanded <n>    give up on a level after this many expansions",
+      "  -b, --beam-width <n>      successors kept per push layer in beam mode",
+      "  -w, --workers <n>         worker processes for the distributed mode",
+      "      --bitstate <MB>       push-astar and greedy keep only hash bits of visited states",
+      "                            in this much memory ( may miss states; no checkpoints )",
+      "      --checkpoint <file>   checkpoint push-level searches to this file",
+      "      --resume              carry on from the checkpoint file",
+      "      --shortest-first      solve the levels in order of their estimated solve time",
+      "      --budget <factor>     limit each level to factor times its estimated time",
+      "  a level is a map name from maps/ or a path to a level file");
+
+  // Levels given a budget still get at least this long
+  private static final long MIN_BUDGET_MILLIS = 1000;
+
+  public static void main(String[] args) {
+    SolverConfig config = new SolverConfig();
+    boolean resume = false;
+    boolean shortestFirst = false;
+    double budget = 0;
+    int levelCount = 0;
+    String[] levels = new String[args.length];
+
+    try {
+      for (int i = 0; i < args.length; i++) {
+        switch (args[i]) {
+          case "-m":
+          case "--mode":
+            config.mode = args[++i];
+            break;
+          case "-t":
+          case "--time":
+            config.timeLimitMillis = (long) (Double.parseDouble(args[++i]) * 1000);
+            break;
+          case "-n":
+          case "--max-expanded":
+            config.maxExpansions = Long.parseLong(args[++i]);
+            break;
+          case "-b":
+          case "--beam-width":
+            config.beamWidth = Integer.parseInt(args[++i]);
+            break;
+          case "-w":
+          case "--workers":
+            config.workers = Integer.parseInt(args[++i]);
+            break;
+          case "--bitstate":
+            config.bitstateBytes = Long.parseLong(args[++i]) << 20;
+            break;
+          case "--checkpoint":
+            config.checkpointFile = args[++i];
+            break;
+          case "--resume":
+            resume = true;
+            break;
+          case "--shortest-first":
+            shortestFirst = true;
+            break;
+          case "--budget":
+            budget = Double.parseDouble(args[++i]);
+            break;
+          case "-h":
+          case "--help":
+            System.out.println(USAGE);
+            return;
+          default:
+            levels[levelCount++] = args[i];
+        }
+      }
+    } catch (ArrayIndexOutOfBoundsException | NumberFormatException ex) {
+      System.err.println(USAGE);
+      System.exit(2);
+    }
+    if (levelCount == 0 || !Arrays.asList(SolverConfig.MODES).contains(config.mode)) {
+      System.err.println(USAGE);
+      System.exit(2);
+    }
+
+    long start = System.nanoTime();
+    int solved = 0;
+    long firstResult = -1;
+
+    // Read every level first, so they can be put in order of their estimated cost
+    FileReader fileReader = new FileReader();
+    double[] weights = DifficultyEstimate.readWeights(Paths.get(DifficultyEstimate.DEFAULT_FILE), config.mode);
+    List<Job> jobs = new ArrayList<>();
+    for (int i = 0; i < levelCount; i++) {
+      String level = levels[i];
+      MapData mapData = new File(level).isFile() ? fileReader.readPath(level) : fileReader.readFile(level);
+      if (mapData == null) {
+        System.out.println(level + ": cannot read level");
+        continue;
+      }
+      Job job = new Job(level, mapData);
+      if (shortestFirst || budget > 0) {
+        job.estimate = new DifficultyEstimate(new Board(mapData.columns, mapData.rows, mapData.mapLayer(),
+            mapData.itemsLayer()));
+      }
+      jobs.add(job);
+    }
+    if (shortestFirst) {
+      jobs.sort(Comparator.comparingDouble(job -> job.estimate.predictMillis(weights)));
+    }
+
+    for (Job job : jobs) {
+      String level = job.level;
+      MapData mapData = job.mapData;
+      SolverConfig levelConfig = config;
+      if (budget > 0) {
+        levelConfig = config.copy();
+        levelConfig.timeLimitMillis = job.estimate.budgetMillis(weights, budget, MIN_BUDGET_MILLIS,
+            config.timeLimitMillis);
+      }
+
+      System.out.println(level);
+      SokoBot sokoBot = new SokoBot();
+      String solution = resume
+          ? sokoBot.resumeSokobanPuzzle(mapData.columns, mapData.rows, mapData.mapLayer(), mapData.itemsLayer(), levelConfig)
+          : sokoBot.solveSokobanPuzzle(mapData.columns, mapData.rows, mapData.mapLayer(), mapData.itemsLayer(), levelConfig);
+      System.out.println();
+      System.out.println(sokoBot.getStats());
+
+      if (solution != null) {
+        solved++;
+      }
+      if (firstResult < 0) {
+        firstResult = (System.nanoTime() - start) / 1000000;
+      }
+    }
+
+    System.out.println(solved + " / " + levelCount + " solved, first result after " + firstResult
+        + " ms, all done after " + (System.nanoTime() - start) / 1000000 + " ms");
+    System.exit(solved == levelCount ? 0 : 1);
+  }
+
+  // A level waiting its turn
+  private static class Job {
+    final String level;
+    final MapData mapData;
+    DifficultyEstimate estimate;
+
+    Job(String level, MapData mapData) {
+      this.level = level;
+      this.mapData = mapData;
+    }
+  }
+}
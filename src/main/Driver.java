@@ -7,8 +7,8 @@ import reader.MapData;
 public class Driver {
   public static void main(String[] args) {
 
-    String mapName = "threeboxes1";
-    String mode = "bot";
+    String mapName = args.length > 0 ? args[0] : "threeboxes1";
+    String mode = args.length > 1 ? args[1] : "bot";
 
     FileReader fileReader = new FileReader();
     MapData mapData = fileReader.readFile(mapName);
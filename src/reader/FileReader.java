@@ -5,6 +5,11 @@ import java.util.Scanner;
 
 public class FileReader {
   public MapData readFile(String keyword) {
+    return readPath("maps/" + keyword + ".txt");
+  }
+
+  // Reads a level from any file in the maps/*.txt format
+  public MapData readPath(String path) {
     int rows = 0;
     int columns = 0;
     char tiles[][] = new char[100][100];
@@ -15,7 +20,7 @@ public class FileReader {
     }
 
     try {
-      File file = new File("maps/" + keyword + ".txt");
+      File file = new File(path);
       Scanner scanner = new Scanner(file);
       while (scanner.hasNext()) {
         String nextLine = scanner.nextLine();
@@ -5,6 +5,30 @@ public class MapData {
   public int rows;
   public int columns;
 
+  // The fixed layer: walls, goals and floor, as GamePanel keeps it
+  public char[][] mapLayer() {
+    char[][] layer = new char[rows][columns];
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        char tile = tiles[i][j];
+        layer[i][j] = tile == '#' ? '#' : (tile == '.' || tile == '+' || tile == '*') ? '.' : ' ';
+      }
+    }
+    return layer;
+  }
+
+  // The moving layer: the player and the boxes
+  public char[][] itemsLayer() {
+    char[][] layer = new char[rows][columns];
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        char tile = tiles[i][j];
+        layer[i][j] = (tile == '@' || tile == '+') ? '@' : (tile == '$' || tile == '*') ? '$' : ' ';
+      }
+    }
+    return layer;
+  }
+
   public void print() {
     for (int i = 0; i < rows; i++) {
       for (int j = 0; j < columns; j++) {
@@ -0,0 +1,328 @@
+package solver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import reader.FileReader;
+import reader.MapData;
+
+/**
+    ` Picks solver options per kind of level. Levels are put in clusters by box count and by how
+    much of their floor is corridor, and for each cluster a few sample levels race every
+    profile of the configuration space by successive halving: every profile still in the race
+    solves the samples under a short time limit, the better half goes on, and the limit doubles,
+    until one profile is left. The winner of each cluster is stored in the profile file as a
+    "cluster option=value ..." line, and SokoBot applies it to any level of that cluster solved
+    in the "tuned" mode. A cluster without a line is solved with push-astar.
+
+    A profile is ranked by the samples it solved ( more is better ), then by its total time in
+    steps of a quarter, with every unsolved sample counted at the time limit, then by its total
+    moves. Every solution is checked with a SolutionVerifier first. Trials run side by side on one
+    heap, so they run with the MemoryWatch off, and one trial's memory cannot make another hand
+    over to a beam.
+
+    Usage: java -cp src solver.Autotuner [options] [mapName ...]
+      -t <seconds>              time limit per trial in the first round ( default 0.5 )
+      -j <threads>              trials run at once ( default: one per processor )
+      -n <levels>               sample levels per cluster ( default 4 )
+      --suite <seed> <pushes>   add the LevelGenerator suite for that seed and pushes per box
+      --profiles <file>         where the profiles go ( default tuning-profiles.txt )
+    With no map names every map in maps/ is used.
+*/
+public class Autotuner {
+
+    /**
+        ` The configuration space: each mode with the options that matter to it.
+    */
+    private static final String[] SPACE = {
+        "mode=push-astar inertia=true relevanceCuts=0",
+        "mode=push-astar inertia=false relevanceCuts=0",
+        "mode=push-astar inertia=true relevanceCuts=2",
+        "mode=push-astar inertia=false relevanceCuts=2",
+        "mode=greedy inertia=true relevanceCuts=0",
+        "mode=greedy inertia=false relevanceCuts=0",
+        "mode=greedy inertia=true relevanceCuts=2",
+        "mode=greedy inertia=false relevanceCuts=2",
+        "mode=decompose subproblemBoxes=2",
+        "mode=decompose subproblemBoxes=3",
+        "mode=decompose subproblemBoxes=4",
+        "mode=beam beamWidth=250",
+        "mode=beam beamWidth=1000",
+        "mode=beam beamWidth=4000",
+        "mode=optimal-pushes heuristicCacheSlots=4096",
+        "mode=optimal-pushes heuristicCacheSlots=262144",
+        "mode=astar heuristicCacheSlots=65536",
+    };
+
+    private static final long TIME_RESOLUTION = 10;     // milliseconds
+    private static final String DEFAULT_PROFILE = "mode=" + SolverConfig.MODE_PUSH_ASTAR;
+
+    /*|************************************************************
+                               Clusters
+    ***************************************************************/
+    /**
+        ` The cluster of a level: a box-count band and whether corridors make up a third or more
+        of the floor, e.g. "boxes6-10/corridors".
+    */
+    public static String cluster( Board board ) {
+        DifficultyEstimate estimate = new DifficultyEstimate(board);
+        int boxes = board.boxes.length;
+        String band = boxes <= 2 ? "boxes1-2" : boxes <= 5 ? "boxes3-5" : boxes <= 10 ? "boxes6-10" : "boxes11+";
+        return band + (estimate.corridorShare() >= 1 / 3.0 ? "/corridors" : "/open");
+    }
+
+    /**
+        ` A copy of the config with the profile of the level's cluster applied, from the
+        config's profile file. A profile that names the tuned mode itself is not followed.
+    */
+    public static SolverConfig tunedConfig( Board board, SolverConfig config ) {
+        SolverConfig tuned = config.copy();
+        String profile = readProfiles(Paths.get(config.profileFile)).getOrDefault(cluster(board), DEFAULT_PROFILE);
+        apply(profile, tuned);
+        if( SolverConfig.MODE_TUNED.equals(tuned.mode) ) {
+            tuned.mode = SolverConfig.MODE_PUSH_ASTAR;
+        }
+        return tuned;
+    }
+
+    private static void apply( String profile, SolverConfig config ) {
+        for( String option : profile.trim().split("\\s+") ) {
+            int equals = option.indexOf('=');
+            if( equals <= 0 || !config.set(option.substring(0, equals), option.substring(equals + 1)) ) {
+                System.err.println("unknown tuning option " + option);
+            }
+        }
+    }
+
+    /*|************************************************************
+                              Main Method
+    ***************************************************************/
+    public static void main( String[] args ) throws Exception {
+        double trialSeconds = 0.5;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int samples = 4;
+        long suiteSeed = 0;
+        int suitePushes = 0;
+        Path profilePath = Paths.get(new SolverConfig().profileFile);
+        List<String> names = new ArrayList<>();
+
+        for( int i = 0; i < args.length; i++ ) {
+            switch( args[i] ) {
+                case "-t": trialSeconds = Double.parseDouble(args[++i]); break;
+                case "-j": threads = Integer.parseInt(args[++i]); break;
+                case "-n": samples = Integer.parseInt(args[++i]); break;
+                case "--suite":
+                    suiteSeed = Long.parseLong(args[++i]);
+                    suitePushes = Integer.parseInt(args[++i]);
+                    break;
+                case "--profiles": profilePath = Paths.get(args[++i]); break;
+                default: names.add(args[i]);
+            }
+        }
+
+        // - Load the levels and sort them into clusters
+        Map<String, MapData> levels = new LinkedHashMap<>();
+        if( names.isEmpty() ) {
+            for( File file : new File("maps").listFiles() ) {
+                if( file.isFile() && file.getName().endsWith(".txt") ) {
+                    names.add(file.getName().replace(".txt", ""));
+                }
+            }
+            Collections.sort(names);
+        }
+        for( String name : names ) {
+            MapData mapData = new FileReader().readFile(name);
+            if( mapData != null ) {
+                levels.put(name, mapData);
+            }
+        }
+        if( suitePushes > 0 ) {
+            for( Map.Entry<String, MapData> level : new LevelGenerator(suiteSeed).suite(suitePushes).entrySet() ) {
+                levels.put("generated/s" + suiteSeed + "_" + level.getKey(), level.getValue());
+            }
+        }
+
+        Map<String, List<String>> clusters = new TreeMap<>();
+        for( Map.Entry<String, MapData> level : levels.entrySet() ) {
+            clusters.computeIfAbsent(cluster(board(level.getValue())), key -> new ArrayList<>()).add(level.getKey());
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            Map<String, String> profiles = readProfiles(profilePath);
+            for( Map.Entry<String, List<String>> cluster : clusters.entrySet() ) {
+                List<String> sample = sample(cluster.getValue(), samples);
+                System.out.println(cluster.getKey() + ": " + cluster.getValue().size() + " levels, racing on " + sample);
+                String best = race(sample, levels, trialSeconds, pool);
+                profiles.put(cluster.getKey(), best);
+                System.out.println(cluster.getKey() + " -> " + best);
+            }
+            writeProfiles(profilePath, profiles);
+            System.out.println("profiles written to " + profilePath);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+        ` Up to n levels spread evenly over the cluster.
+    */
+    private static List<String> sample( List<String> names, int n ) {
+        if( names.size() <= n ) {
+            return names;
+        }
+        List<String> sample = new ArrayList<>();
+        for( int i = 0; i < n; i++ ) {
+            sample.add(names.get(i * names.size() / n));
+        }
+        return sample;
+    }
+
+    /*|************************************************************
+                          Successive Halving
+    ***************************************************************/
+    private static class Score implements Comparable<Score> {
+        String profile;
+        int unsolved;
+        long millis;
+        long moves;
+
+        @Override public int compareTo( Score other ) {
+            if( unsolved != other.unsolved ) {
+                return Integer.compare(unsolved, other.unsolved);
+            }
+            if( timeBucket() != other.timeBucket() ) {
+                return Integer.compare(timeBucket(), other.timeBucket());
+            }
+            if( moves != other.moves ) {
+                return Long.compare(moves, other.moves);
+            }
+            return Long.compare(millis, other.millis);
+        }
+
+        /**
+            ` Times in steps of 25 percent above TIME_RESOLUTION, so timer noise on quick levels
+            does not outrank a shorter solution.
+        */
+        int timeBucket() {
+            return (int) (Math.log1p(millis / (double) TIME_RESOLUTION) / Math.log(1.25));
+        }
+    }
+
+    /**
+        ` Runs the rounds for one cluster and returns the winning profile.
+    */
+    private static String race( List<String> sample, Map<String, MapData> levels, double trialSeconds,
+                                ExecutorService pool ) throws Exception {
+        List<String> alive = new ArrayList<>(Arrays.asList(SPACE));
+        long limit = (long) (trialSeconds * 1000);
+        while( alive.size() > 1 ) {
+            // - Every trial of the round at once; each profile's score sums its samples
+            Map<String, List<Future<Long[]>>> trials = new LinkedHashMap<>();
+            for( String profile : alive ) {
+                List<Future<Long[]>> futures = new ArrayList<>();
+                for( String name : sample ) {
+                    MapData mapData = levels.get(name);
+                    long trialLimit = limit;
+                    futures.add(pool.submit(() -> trial(profile, mapData, trialLimit)));
+                }
+                trials.put(profile, futures);
+            }
+
+            List<Score> scores = new ArrayList<>();
+            for( Map.Entry<String, List<Future<Long[]>>> trial : trials.entrySet() ) {
+                Score score = new Score();
+                score.profile = trial.getKey();
+                for( Future<Long[]> future : trial.getValue() ) {
+                    Long[] result = future.get();
+                    if( result == null ) {
+                        score.unsolved++;
+                        score.millis += limit;
+                    } else {
+                        score.millis += result[0];
+                        score.moves += result[1];
+                    }
+                }
+                scores.add(score);
+            }
+            Collections.sort(scores);
+
+            int keep = (scores.size() + 1) / 2;
+            System.out.printf("  %d ms limit: best %s ( %d unsolved, %d ms ), %d of %d go on%n", limit,
+                scores.get(0).profile, scores.get(0).unsolved, scores.get(0).millis, keep, scores.size());
+            alive.clear();
+            for( int i = 0; i < keep; i++ ) {
+                alive.add(scores.get(i).profile);
+            }
+            limit *= 2;
+        }
+        return alive.get(0);
+    }
+
+    /**
+        ` One budgeted solve; { millis, moves } of a verified solution, or null.
+    */
+    private static Long[] trial( String profile, MapData mapData, long limit ) {
+        SolverConfig config = new SolverConfig();
+        apply(profile, config);
+        config.timeLimitMillis = limit;
+        config.printSolution = false;
+        config.memoryThreshold = 0;
+
+        SokoBot sokoBot = new SokoBot();
+        String solution;
+        try {
+            solution = sokoBot.solveSokobanPuzzle(mapData.columns, mapData.rows, mapData.mapLayer(),
+                mapData.itemsLayer(), config);
+        } catch( RuntimeException | StackOverflowError | OutOfMemoryError ex ) {
+            return null;
+        }
+        if( solution == null || new SolutionVerifier(board(mapData)).verify(solution) != SolutionVerifier.VALID ) {
+            return null;
+        }
+        return new Long[] { sokoBot.getStats().millis, (long) solution.length() };
+    }
+
+    private static Board board( MapData mapData ) {
+        return new Board(mapData.columns, mapData.rows, mapData.mapLayer(), mapData.itemsLayer());
+    }
+
+    /*|************************************************************
+                             Profile File
+    ***************************************************************/
+    /**
+        ` The profile of every cluster in the file; empty when there is no file.
+    */
+    public static Map<String, String> readProfiles( Path path ) {
+        Map<String, String> profiles = new TreeMap<>();
+        try {
+            if( Files.exists(path) ) {
+                for( String line : Files.readAllLines(path) ) {
+                    line = line.trim();
+                    int space = line.indexOf(' ');
+                    if( space > 0 && !line.startsWith("#") ) {
+                        profiles.put(line.substring(0, space), line.substring(space + 1).trim());
+                    }
+                }
+            }
+        } catch( IOException ex ) {
+            ex.printStackTrace();
+        }
+        return profiles;
+    }
+
+    private static void writeProfiles( Path path, Map<String, String> profiles ) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for( Map.Entry<String, String> profile : profiles.entrySet() ) {
+            lines.add(profile.getKey() + " " + profile.getValue());
+        }
+        Files.write(path, lines);
+    }
+}
@@ -0,0 +1,271 @@
+package solver;
+
+import java.util.Arrays;
+
+/**
+    ` Push-level beam search. The search goes one push layer at a time and keeps only the
+    `width` successors with the smallest heuristic ( ties to the push that carries on its
+    parent's push when inertia is on ), so memory grows with width * depth instead of with the
+    whole state space. The answer is not optimal, and a narrow beam can lose every solution.
+
+    A run that cut no layer was a full breadth-first search, so its failure is final. Otherwise
+    the width is doubled and the search starts over, until a solution turns up or a limit is
+    reached. When the MemoryWatch reports pressure during a layer, the width is halved from
+    that layer on and the closed set forgets the layers before it, which then costs some
+    revisits but nothing else. A table that fails to grow restarts the beam at half the width.
+    A squeezed beam is not widened again, and every trigger is noted in the stats.
+
+    This is also where A* and the push-level searches go when they run short of memory.
+*/
+public class BeamSearch {
+
+    /*|************************************************************
+                              Attributes
+    ***************************************************************/
+    private Board board;
+    private PushExpander expander;
+    private SolverConfig config;
+    private SolveStats stats;
+    private SearchProgress progress;
+    private MemoryWatch watch;
+    private boolean inertia;
+    private int boxCount;
+
+    private int width;
+    private boolean squeezed = false;     // the memory watch shrank the width
+    private boolean cut;                  // the last run dropped successors somewhere
+
+    // - Parent links of every kept node
+    private int nodeCount;
+    private int[] parent = new int[1024];
+    private int[] push = new int[1024];
+
+    // - Current layer and the successors generated from it, as flat records:
+    //   layer { node, player, boxes... }, candidates { parent node, push, player, h, boxes... }
+    private int[] layer;
+    private int layerCount;
+    private int[] candidates = new int[1024];
+    private long[] order = new long[256];
+    private int candidateCount;
+
+    /*|************************************************************
+                          Constructor Methods
+    ***************************************************************/
+    public BeamSearch( Board board, SolverConfig config, SolveStats stats ) {
+        this.board = board;
+        this.expander = new PushExpander(board);
+        this.config = config;
+        this.stats = stats;
+        this.progress = config.progress;
+        this.watch = new MemoryWatch(config.memoryThreshold);
+        this.inertia = config.inertia;
+        this.boxCount = board.boxes.length;
+        this.width = Math.max(1, config.beamWidth);
+    }
+
+    /*|************************************************************
+                              Main Method
+    ***************************************************************/
+    /**
+        ` Runs the search and turns the pushes into a move string.
+    */
+    public String solve() {
+        int[] pushes = search();
+        return pushes == null ? null : new SolutionOptimizer(board).buildSolution(pushes);
+    }
+
+    /**
+        ` Runs beams of growing width and returns the pushes of the first solution found, or null.
+    */
+    public int[] search() {
+        while( true ) {
+            int[] pushes;
+            try {
+                pushes = run();
+            } catch( OutOfMemoryError ex ) {
+                layer = null;
+                candidates = new int[1024];
+                order = new long[256];
+                parent = new int[1024];
+                push = new int[1024];
+                if( width == 1 ) {
+                    return null;
+                }
+                shrink("out of memory");
+                continue;
+            }
+            stats.beamWidth = width;
+            if( pushes != null || !cut || squeezed || stats.limitReached ) {
+                return pushes;
+            }
+            width *= 2;
+        }
+    }
+
+    /**
+        ` One beam from the start position at the current width.
+    */
+    private int[] run() {
+        int[] start = board.boxes.clone();
+        if( expander.heuristic(start) == Integer.MAX_VALUE ) {
+            cut = false;
+            return null;
+        }
+        if( board.isSolved(start) ) {
+            return new int[0];
+        }
+
+        CompactClosedSet closed = new CompactClosedSet(board);
+        int startPlayer = expander.normalize(board.player, start);
+        closed.add(startPlayer, start);
+        nodeCount = 0;
+        cut = false;
+        int root = addNode(-1, -1);
+        layer = new int[boxCount + 2];
+        layer[0] = root;
+        layer[1] = startPlayer;
+        System.arraycopy(start, 0, layer, 2, boxCount);
+        layerCount = 1;
+
+        int[] boxes = new int[boxCount];
+        int[] after = new int[boxCount];
+        int[] pushes = new int[4 * Math.max(1, boxCount)];
+        int layerStride = boxCount + 2;
+        int candidateStride = boxCount + 4;
+
+        try {
+            for( int depth = 1; ; depth++ ) {
+                // - Expand the whole layer, keeping successors not seen in an earlier layer
+                candidateCount = 0;
+                boolean pressed = false;
+                for( int l = 0; l < layerCount; l++ ) {
+                    int node = layer[l * layerStride];
+                    System.arraycopy(layer, l * layerStride + 2, boxes, 0, boxCount);
+                    stats.expanded++;
+                    if( stats.overLimit() ) {
+                        return null;
+                    }
+                    pressed |= watch.tick();
+
+                    int count = expander.generate(layer[l * layerStride + 1], boxes, pushes);
+                    for( int i = 0; i < count; i++ ) {
+                        int nextPlayer = expander.apply(boxes, pushes[i], after);
+                        int h = expander.heuristic(after);
+                        if( h == Integer.MAX_VALUE ) {
+                            continue;
+                        }
+                        nextPlayer = expander.normalize(nextPlayer, after);
+                        if( closed.contains(nextPlayer, after) ) {
+                            continue;
+                        }
+                        addCandidate(node, pushes[i], nextPlayer, h, after);
+                        stats.generated++;
+                    }
+                }
+                if( candidateCount == 0 ) {
+                    return null;
+                }
+
+                if( pressed && width > 1 ) {
+                    shrink(String.format("layer %d at %.0f%% heap", depth, 100 * watch.lastShare()));
+                    closed = new CompactClosedSet(board);
+                }
+
+                // - Keep the best `width` of them; within a layer the same state can turn up twice
+                Arrays.sort(order, 0, candidateCount);
+                int[] next = new int[Math.min(width, candidateCount) * layerStride];
+                int kept = 0;
+                for( int k = 0; k < candidateCount && kept < width; k++ ) {
+                    int c = (int) (order[k] & Integer.MAX_VALUE) * candidateStride;
+                    System.arraycopy(candidates, c + 4, after, 0, boxCount);
+                    if( !closed.add(candidates[c + 2], after) ) {
+                        continue;
+                    }
+
+                    int node = addNode(candidates[c], candidates[c + 1]);
+                    if( board.isSolved(after) ) {
+                        return tracePushes(node, depth);
+                    }
+                    next[kept * layerStride] = node;
+                    next[kept * layerStride + 1] = candidates[c + 2];
+                    System.arraycopy(after, 0, next, kept * layerStride + 2, boxCount);
+                    kept++;
+                    if( kept == width && k + 1 < candidateCount ) {
+                        cut = true;
+                    }
+                }
+                layer = next;
+                layerCount = kept;
+
+                if( progress != null && progress.isDue() ) {
+                    int c = (int) (order[0] & Integer.MAX_VALUE) * candidateStride;
+                    progress.publish(board, candidates[c + 2], Arrays.copyOfRange(candidates, c + 4, c + 4 + boxCount),
+                        candidates[c + 3], depth, layerCount, stats.expanded);
+                }
+            }
+        } finally {
+            stats.recordClosedSet(closed);
+        }
+    }
+
+    /**
+        ` Halves the width after memory ran short, and notes where.
+    */
+    private void shrink( String where ) {
+        if( width == 1 ) {
+            return;
+        }
+        width = Math.max(1, width / 2);
+        squeezed = true;
+        stats.triggers.add(where + ": beam width " + width);
+    }
+
+    private int[] tracePushes( int node, int depth ) {
+        int[] pushes = new int[depth];
+        for( int i = depth - 1; i >= 0; i-- ) {
+            pushes[i] = push[node];
+            node = parent[node];
+        }
+        return pushes;
+    }
+
+    /*|************************************************************
+                              Node Store
+    ***************************************************************/
+    private int addNode( int parentNode, int pushCode ) {
+        if( nodeCount == parent.length ) {
+            parent = Arrays.copyOf(parent, nodeCount * 2);
+            push = Arrays.copyOf(push, nodeCount * 2);
+        }
+        parent[nodeCount] = parentNode;
+        push[nodeCount] = pushCode;
+        return nodeCount++;
+    }
+
+    /**
+        ` Files a successor with its sort key: the heuristic, then 0 for a push that carries on
+        the parent's push ( with inertia ) and 1 otherwise, then the candidate's index.
+    */
+    private void addCandidate( int parentNode, int pushCode, int playerCell, int h, int[] boxes ) {
+        int stride = boxCount + 4;
+        if( (candidateCount + 1) * stride > candidates.length ) {
+            candidates = Arrays.copyOf(candidates, candidates.length * 2 + stride);
+        }
+        if( candidateCount == order.length ) {
+            order = Arrays.copyOf(order, candidateCount * 2);
+        }
+
+        int c = candidateCount * stride;
+        candidates[c] = parentNode;
+        candidates[c + 1] = pushCode;
+        candidates[c + 2] = playerCell;
+        candidates[c + 3] = h;
+        System.arraycopy(boxes, 0, candidates, c + 4, boxCount);
+
+        int last = push[parentNode];
+        boolean straight = inertia && last >= 0 && pushCode >> 2 == (last >> 2) + board.offset[last & 3]
+                           && (pushCode & 3) == (last & 3);
+        order[candidateCount] = (long) h << 32 | (straight ? 0L : 1L << 31) | candidateCount;
+        candidateCount++;
+    }
+}
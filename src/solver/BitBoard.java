@@ -0,0 +1,203 @@
+package solver;
+
+/**
+    ` Player reachability on a flat bitset. Cell i of the Board is bit ( i & 63 ) of word
+    ( i >> 6 ), so moving every reached square one step is just a word-wise shift by 1 or by
+    the board width. A flood fill is repeated shift-and-mask until nothing new is added,
+    which touches size / 64 words per sweep instead of allocating a Coordinates per square.
+*/
+public class BitBoard {
+
+    /*|************************************************************
+                              Attributes
+    ***************************************************************/
+    protected Board board;
+    protected int words;
+
+    protected long[] floor;          // floor squares
+    protected long[] notFirstCol;    // clears bits that wrapped from the end of the previous row
+    protected long[] notLastCol;     // clears bits that wrapped from the start of the next row
+
+    // - Scratch sets reused by every call so flood fills do not allocate
+    private long[] free;
+    private long[] reach;
+
+    /*|************************************************************
+                          Constructor Methods
+    ***************************************************************/
+    public BitBoard( Board board ) {
+        this.board = board;
+        this.words = (board.size + 63) >>> 6;
+
+        this.floor = new long[words];
+        this.notFirstCol = new long[words];
+        this.notLastCol = new long[words];
+        this.free = new long[words];
+        this.reach = new long[words];
+
+        for( int cell = 0; cell < board.size; cell++ ) {
+            int col = board.col(cell);
+            if( board.floor[cell] ) {
+                set(floor, cell);
+            }
+            if( col != 0 ) {
+                set(notFirstCol, cell);
+            }
+            if( col != board.width - 1 ) {
+                set(notLastCol, cell);
+            }
+        }
+    }
+
+    /*|************************************************************
+                             Set Helpers
+    ***************************************************************/
+    public long[] newSet() {
+        return new long[words];
+    }
+
+    public static void set( long[] bits, int cell ) {
+        bits[cell >>> 6] |= 1L << cell;
+    }
+
+    public static void clear( long[] bits, int cell ) {
+        bits[cell >>> 6] &= ~(1L << cell);
+    }
+
+    public static boolean has( long[] bits, int cell ) {
+        return (bits[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+        ` Fills `bits` with the given box cells, clearing whatever it held before.
+    */
+    public void boxesToBits( int[] boxes, long[] bits ) {
+        java.util.Arrays.fill(bits, 0L);
+        for( int box : boxes ) {
+            set(bits, box);
+        }
+    }
+
+    /*|************************************************************
+                             Reachability
+    ***************************************************************/
+    /**
+        ` Computes every square the player can walk to without pushing a box.
+
+        @param player    the player's cell
+        @param boxBits   the occupied squares
+        @return the reachable set; this is a shared scratch array that is overwritten by the
+                next call, so copy it if it has to be kept
+    */
+    public long[] reachable( int player, long[] boxBits ) {
+        for( int i = 0; i < words; i++ ) {
+            free[i] = floor[i] & ~boxBits[i];
+            reach[i] = 0L;
+        }
+        set(reach, player);
+
+        // - Words are updated in place, alternating forward and backward sweeps, so a single
+        //   sweep carries the fill across many words; inside a word the spread is repeated until
+        //   it settles, which is only register work
+        boolean changed = true;
+        boolean forward = true;
+        while( changed ) {
+            changed = false;
+
+            for( int k = 0; k < words; k++ ) {
+                int i = forward ? k : words - 1 - k;
+                long before = reach[i];
+                long word = before;
+
+                do {
+                    reach[i] = word;
+                    word = (word
+                        | (shiftUp(reach, i, 1) & notFirstCol[i])
+                        | (shiftDown(reach, i, 1) & notLastCol[i])
+                        | shiftUp(reach, i, board.width)
+                        | shiftDown(reach, i, board.width)) & free[i];
+                } while( word != reach[i] );
+
+                changed |= word != before;
+            }
+            forward = !forward;
+        }
+        return reach;
+    }
+
+    /**
+        ` Returns the lowest reachable cell. Two player positions with the same canonical cell
+        are interchangeable for a push-level search.
+    */
+    public int canonicalCell( long[] reachSet ) {
+        for( int i = 0; i < words; i++ ) {
+            if( reachSet[i] != 0 ) {
+                return (i << 6) + Long.numberOfTrailingZeros(reachSet[i]);
+            }
+        }
+        return -1;
+    }
+
+    /**
+        ` Lists the pushes available from a reachable set: the player must be able to stand
+        behind the box and the square in front of it must be free floor.
+
+        @param reachSet   result of reachable()
+        @param boxBits    the occupied squares
+        @param boxes      the box cells
+        @param out        receives ( box cell * 4 + direction ) codes; needs room for 4 * boxes
+        @return the number of pushes written
+    */
+    public int pushes( long[] reachSet, long[] boxBits, int[] boxes, int[] out ) {
+        int count = 0;
+        for( int box : boxes ) {
+            for( int dir = 0; dir < 4; dir++ ) {
+                int behind = box - board.offset[dir];
+                int beyond = box + board.offset[dir];
+
+                if( board.isFloor(behind) && has(reachSet, behind)
+                        && board.isFloor(beyond) && !has(boxBits, beyond) ) {
+                    out[count++] = box * 4 + dir;
+                }
+            }
+        }
+        return count;
+    }
+
+    /*|************************************************************
+                             Word Shifts
+    ***************************************************************/
+    /**
+        ` Word i of the set shifted towards higher cells by k bits.
+    */
+    private static long shiftUp( long[] bits, int i, int k ) {
+        int from = i - (k >>> 6);
+        int shift = k & 63;
+
+        if( from < 0 ) {
+            return 0L;
+        }
+        long word = bits[from] << shift;
+        if( shift != 0 && from > 0 ) {
+            word |= bits[from - 1] >>> (64 - shift);
+        }
+        return word;
+    }
+
+    /**
+        ` Word i of the set shifted towards lower cells by k bits.
+    */
+    private static long shiftDown( long[] bits, int i, int k ) {
+        int from = i + (k >>> 6);
+        int shift = k & 63;
+
+        if( from >= bits.length ) {
+            return 0L;
+        }
+        long word = bits[from] >>> shift;
+        if( shift != 0 && from + 1 < bits.length ) {
+            word |= bits[from + 1] << (64 - shift);
+        }
+        return word;
+    }
+}
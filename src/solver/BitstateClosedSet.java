@@ -0,0 +1,155 @@
+package solver;
+
+import java.util.Random;
+
+/**
+    ` A lossy closed set that keeps no states at all, only bits ( bitstate hashing ). A state's
+    64-bit Zobrist hash picks one 512-bit block of a single long[], one cache line, and HASHES
+    bits inside it taken from a remix of the same hash. A state counts as seen when all of its
+    bits are set, so a new state whose bits happen to be set already is dropped: the search
+    misses it and whatever lies only behind it. It never keeps a state twice.
+
+    The chance of that is the share of set bits in the state's block to the power HASHES. The set
+    adds it up over every state it takes in, which estimates how many states were omitted. A
+    search that fails with this set is not proof that the level has no solution.
+
+    Only the closed set shrinks. PushSearch still keeps its node store, about 29 bytes per
+    node slot plus the box list of every open node, which SolveStats reports on its own.
+
+    The array is allocated at full size up front and never grows. At 8 bytes per state each new
+    state has less than a one in a million chance of being dropped, but the expected number of
+    dropped states grows with the number of states; expectedOmissions() gives the total.
+*/
+public class BitstateClosedSet implements ClosedSet {
+
+    /*|************************************************************
+                              Attributes
+    ***************************************************************/
+    public static final int HASHES = 6;
+
+    private static final int BLOCK_SHIFT = 3;               // 8 longs = 512 bits per block
+    private static final int BLOCK_BITS = 64 << BLOCK_SHIFT;
+
+    private final long[] bits;
+    private final int blockMask;
+    private final long[] boxKeys;       // random key per cell
+    private final long[] playerKeys;
+
+    private long size = 0;
+    private long setBits = 0;
+    private double expectedOmissions = 0;
+
+    /*|************************************************************
+                          Constructor Methods
+    ***************************************************************/
+    /**
+        @param bytes    memory for the bits, rounded down to a power of two between 64 bytes and 8 GB
+    */
+    public BitstateClosedSet( Board board, long bytes ) {
+        this.bits = new long[(int) Long.highestOneBit(Math.max(64, Math.min(bytes, 1L << 33)) >>> 3)];
+        this.blockMask = (bits.length >>> BLOCK_SHIFT) - 1;
+
+        Random random = new Random(board.size);
+        this.boxKeys = new long[board.size];
+        this.playerKeys = new long[board.size];
+        for( int i = 0; i < board.size; i++ ) {
+            boxKeys[i] = random.nextLong();
+            playerKeys[i] = random.nextLong();
+        }
+    }
+
+    /*|************************************************************
+                            Class Methods
+    ***************************************************************/
+    @Override public boolean add( int player, int[] boxes ) {
+        long hash = hash(player, boxes);
+        int base = ((int) (hash >>> 32) & blockMask) << BLOCK_SHIFT;
+        long spread = mix(hash);
+
+        // - The chance that this state's bits were all set by others, from its block's fill
+        int filled = 0;
+        for( int i = 0; i < 1 << BLOCK_SHIFT; i++ ) {
+            filled += Long.bitCount(bits[base + i]);
+        }
+        double omission = Math.pow(filled / (double) BLOCK_BITS, HASHES);
+
+        boolean added = false;
+        for( int i = 0; i < HASHES; i++ ) {
+            int bit = (int) (spread >>> (9 * i)) & (BLOCK_BITS - 1);
+            long mask = 1L << bit;
+            int word = base + (bit >>> 6);
+            if( (bits[word] & mask) == 0 ) {
+                bits[word] |= mask;
+                setBits++;
+                added = true;
+            }
+        }
+        if( added ) {
+            size++;
+            expectedOmissions += omission;
+        }
+        return added;
+    }
+
+    @Override public boolean contains( int player, int[] boxes ) {
+        long hash = hash(player, boxes);
+        int base = ((int) (hash >>> 32) & blockMask) << BLOCK_SHIFT;
+        long spread = mix(hash);
+        for( int i = 0; i < HASHES; i++ ) {
+            int bit = (int) (spread >>> (9 * i)) & (BLOCK_BITS - 1);
+            if( (bits[base + (bit >>> 6)] & 1L << bit) == 0 ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override public long size() {
+        return size;
+    }
+
+    @Override public long bytesUsed() {
+        return bits.length * 8L + (boxKeys.length + playerKeys.length) * 8L;
+    }
+
+    /**
+        ` Share of the bits that are set.
+    */
+    @Override public double loadFactor() {
+        return setBits / (bits.length * 64.0);
+    }
+
+    /**
+        ` Sum over the states added of the chance that a state like it was dropped as seen.
+    */
+    public double expectedOmissions() {
+        return expectedOmissions;
+    }
+
+    /**
+        ` Chance that at least one state was dropped.
+    */
+    public double omissionProbability() {
+        return -Math.expm1(-expectedOmissions);
+    }
+
+    /*|************************************************************
+                               Hashing
+    ***************************************************************/
+    private long hash( int player, int[] boxes ) {
+        long hash = playerKeys[player];
+        for( int box : boxes ) {
+            hash ^= boxKeys[box];
+        }
+        return hash;
+    }
+
+    /**
+        ` The splitmix64 finalizer, so the bits in a block do not follow from the block index.
+    */
+    private static long mix( long x ) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+}
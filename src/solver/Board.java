@@ -0,0 +1,224 @@
+package solver;
+
+/**
+    ` A static, index-based view of a level. Every square is addressed by a single
+    int cell ( row * width + col ), which lets the solver helpers work on flat arrays
+    instead of lists of Coordinates.
+*/
+public class Board {
+
+    /*|************************************************************
+                              Attributes
+    ***************************************************************/
+    // -  Movement directions: { up, down, left, right }, same order as the rest of the solver
+    protected static final int[] D_ROW = { -1, 1, 0, 0 };
+    protected static final int[] D_COL = { 0, 0, -1, 1 };
+    protected static final char[] MOVES = { 'u', 'd', 'l', 'r' };
+
+    protected int width;
+    protected int height;
+    protected int size;
+    protected int[] offset = new int[4];  // cell offset of each direction
+
+    protected boolean[] floor;            // squares reachable by the player when boxes are ignored
+    protected boolean[] goal;
+    protected int[] goals;                // goal cells, ascending
+    protected int[] boxes;                // initial box cells, ascending
+    protected int player;                 // initial player cell
+
+    protected boolean[] dead;             // squares a box can never be pushed to a goal from
+    protected int[] goalDistance;         // fewest pushes from each square to any goal, ignoring other boxes
+    protected WalkTable walks;            // walking distances between floor squares, null until SokoBot builds it
+
+    /*|************************************************************
+                          Constructor Methods
+    ***************************************************************/
+    /**
+        ` A constructor that builds the board from the same map and items layers that
+        SokoBot receives.
+
+        @param width        gameboard width
+        @param height       gameboard height
+        @param mapData      2D char array representing the map layout
+        @param itemsData    2D char array representing items and player positions
+    */
+    public Board( int width, int height, char[][] mapData, char[][] itemsData ) {
+        this.width = width;
+        this.height = height;
+        this.size = width * height;
+
+        for( int i = 0; i < 4; i++ ) {
+            offset[i] = D_ROW[i] * width + D_COL[i];
+        }
+
+        boolean[] open = new boolean[size];
+        boolean[] isGoal = new boolean[size];
+        boolean[] isBox = new boolean[size];
+        player = -1;
+
+        for( int row = 0; row < height; row++ ) {
+            for( int col = 0; col < width; col++ ) {
+                int cell = index(row, col);
+                char tile = mapData[row][col];
+                char item = itemsData[row][col];
+
+                open[cell] = tile != '#';
+                isGoal[cell] = tile == '.' || tile == '+' || tile == '*' || item == '.';
+                isBox[cell] = item == '$' || item == '*' || tile == '$' || tile == '*';
+
+                if( item == '@' || item == '+' || tile == '@' || tile == '+' ) {
+                    player = cell;
+                }
+            }
+        }
+
+        // - Only squares connected to the player count as floor; padding outside the walls does not
+        floor = new boolean[size];
+        if( player >= 0 ) {
+            int[] queue = new int[size];
+            int head = 0, tail = 0;
+            queue[tail++] = player;
+            floor[player] = true;
+
+            while( head < tail ) {
+                int curr = queue[head++];
+                for( int i = 0; i < 4; i++ ) {
+                    int next = neighbor(curr, i);
+                    if( next >= 0 && open[next] && !floor[next] ) {
+                        floor[next] = true;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+
+        goal = new boolean[size];
+        int goalCount = 0, boxCount = 0;
+        for( int cell = 0; cell < size; cell++ ) {
+            if( floor[cell] && isGoal[cell] ) {
+                goal[cell] = true;
+                goalCount++;
+            }
+            if( floor[cell] && isBox[cell] ) {
+                boxCount++;
+            }
+        }
+
+        goals = new int[goalCount];
+        boxes = new int[boxCount];
+        goalCount = 0;
+        boxCount = 0;
+        for( int cell = 0; cell < size; cell++ ) {
+            if( goal[cell] ) {
+                goals[goalCount++] = cell;
+            }
+            if( floor[cell] && isBox[cell] ) {
+                boxes[boxCount++] = cell;
+            }
+        }
+
+        analyzeGoalDistances();
+    }
+
+    /**
+        ` Pulls a lone box backwards from every goal at once. Squares the box reaches get their
+        push distance to the nearest goal; every other floor square is a simple deadlock.
+    */
+    private void analyzeGoalDistances() {
+        goalDistance = new int[size];
+        dead = new boolean[size];
+        java.util.Arrays.fill(goalDistance, Integer.MAX_VALUE);
+
+        int[] queue = new int[size];
+        int head = 0, tail = 0;
+        for( int g : goals ) {
+            goalDistance[g] = 0;
+            queue[tail++] = g;
+        }
+
+        while( head < tail ) {
+            int curr = queue[head++];
+            for( int i = 0; i < 4; i++ ) {
+                // - Pulling the box one step needs that square and the one after it free
+                int next = curr + offset[i];
+                if( isFloor(next) && isFloor(next + offset[i]) && goalDistance[next] == Integer.MAX_VALUE ) {
+                    goalDistance[next] = goalDistance[curr] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        for( int cell = 0; cell < size; cell++ ) {
+            dead[cell] = floor[cell] && goalDistance[cell] == Integer.MAX_VALUE;
+        }
+    }
+
+    /*|************************************************************
+                            Class Methods
+    ***************************************************************/
+    public int index( int row, int col ) {
+        return row * width + col;
+    }
+
+    public int row( int cell ) {
+        return cell / width;
+    }
+
+    public int col( int cell ) {
+        return cell % width;
+    }
+
+    /**
+        ` Returns the cell next to the given one in a direction, or -1 when that would
+        leave the board.
+    */
+    public int neighbor( int cell, int direction ) {
+        int row = cell / width + D_ROW[direction];
+        int col = cell % width + D_COL[direction];
+
+        if( row < 0 || row >= height || col < 0 || col >= width ) {
+            return -1;
+        }
+        return row * width + col;
+    }
+
+    /**
+        ` Checks if the cell is a floor square, treating anything off the board as a wall.
+    */
+    public boolean isFloor( int cell ) {
+        return cell >= 0 && cell < size && floor[cell];
+    }
+
+    /**
+        ` Checks if every box in a sorted box list sits on a goal.
+    */
+    public boolean isSolved( int[] boxCells ) {
+        for( int box : boxCells ) {
+            if( !goal[box] ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+        ` Returns the direction ( 0: up, 1: down, 2: left, 3: right ) of a move character,
+        or -1 when the character is not a move.
+    */
+    public static int direction( char move ) {
+        switch( Character.toLowerCase(move) ) {
+            case 'u': return 0;
+            case 'd': return 1;
+            case 'l': return 2;
+            case 'r': return 3;
+            default:  return -1;
+        }
+    }
+
+    /**
+        ` Returns the direction opposite to the given one.
+    */
+    public static int opposite( int direction ) {
+        return direction ^ 1;
+    }
+}
@@ -0,0 +1,197 @@
+package solver;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+    ` Binary checkpoint files for long searches. A checkpoint is streamed through one direct
+    buffer into a temporary file next to the target, forced to disk, and then moved over the
+    target in one step, so a crash mid-write leaves the previous checkpoint intact.
+
+    Every file starts with MAGIC, VERSION and a fingerprint of the board, so a checkpoint is
+    never resumed on another level.
+*/
+public class Checkpoint {
+
+    private static final long MAGIC = 0x534f4b4f43484b50L;     // "SOKOCHKP"
+    private static final int VERSION = 1;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    /**
+        ` Hash of everything that defines the level: size, floor, goals, boxes and player.
+    */
+    public static long fingerprint( Board board ) {
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ board.width) * 0x100000001b3L;
+        hash = (hash ^ board.height) * 0x100000001b3L;
+        for( int cell = 0; cell < board.size; cell++ ) {
+            int code = (board.floor[cell] ? 1 : 0) | (board.goal[cell] ? 2 : 0);
+            hash = (hash ^ code) * 0x100000001b3L;
+        }
+        for( int box : board.boxes ) {
+            hash = (hash ^ box) * 0x100000001b3L;
+        }
+        return (hash ^ board.player) * 0x100000001b3L;
+    }
+
+    /*|************************************************************
+                                Output
+    ***************************************************************/
+    /**
+        ` Writes a checkpoint. Nothing is visible at the target until commit(); closing without
+        it deletes the temporary file and leaves the previous checkpoint as it was.
+    */
+    public static class Output implements AutoCloseable {
+        private Path target;
+        private Path temporary;
+        private FileChannel channel;
+        private ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private long written = 0;
+        private boolean committed = false;
+
+        public Output( Path target, Board board ) throws IOException {
+            this.target = target;
+            this.temporary = Paths.get(target.toString() + ".tmp");
+            this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            writeLong(MAGIC);
+            writeInt(VERSION);
+            writeLong(fingerprint(board));
+        }
+
+        public void writeInt( int value ) throws IOException {
+            ensure(Integer.BYTES);
+            bytes.putInt(value);
+        }
+
+        public void writeLong( long value ) throws IOException {
+            ensure(Long.BYTES);
+            bytes.putLong(value);
+        }
+
+        public void writeInts( int[] values, int count ) throws IOException {
+            for( int i = 0; i < count; i++ ) {
+                writeInt(values[i]);
+            }
+        }
+
+        public void writeLongs( long[] values, int count ) throws IOException {
+            for( int i = 0; i < count; i++ ) {
+                writeLong(values[i]);
+            }
+        }
+
+        private void ensure( int needed ) throws IOException {
+            if( bytes.remaining() < needed ) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            bytes.flip();
+            while( bytes.hasRemaining() ) {
+                written += channel.write(bytes);
+            }
+            bytes.clear();
+        }
+
+        /**
+            ` Bytes written so far.
+        */
+        public long bytesWritten() {
+            return written + bytes.position();
+        }
+
+        /**
+            ` Flushes, forces the file to disk and moves it over the target. The last call of a
+            complete write.
+        */
+        public void commit() throws IOException {
+            flush();
+            channel.force(true);
+            channel.close();
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+        }
+
+        /**
+            ` Drops the temporary file of a write that never reached commit().
+        */
+        @Override public void close() throws IOException {
+            if( !committed ) {
+                channel.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    /*|************************************************************
+                                 Input
+    ***************************************************************/
+    /**
+        ` Reads a checkpoint written by Output, after checking its header against the board.
+    */
+    public static class Input implements AutoCloseable {
+        private FileChannel channel;
+        private ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+        public Input( Path source, Board board ) throws IOException {
+            this.channel = FileChannel.open(source, StandardOpenOption.READ);
+            bytes.flip();
+            if( readLong() != MAGIC || readInt() != VERSION ) {
+                channel.close();
+                throw new IOException(source + " is not a checkpoint of this version");
+            }
+            if( readLong() != fingerprint(board) ) {
+                channel.close();
+                throw new IOException(source + " was written for another level");
+            }
+        }
+
+        public int readInt() throws IOException {
+            ensure(Integer.BYTES);
+            return bytes.getInt();
+        }
+
+        public long readLong() throws IOException {
+            ensure(Long.BYTES);
+            return bytes.getLong();
+        }
+
+        public void readInts( int[] values, int count ) throws IOException {
+            for( int i = 0; i < count; i++ ) {
+                values[i] = readInt();
+            }
+        }
+
+        public void readLongs( long[] values, int count ) throws IOException {
+            for( int i = 0; i < count; i++ ) {
+                values[i] = readLong();
+            }
+        }
+
+        private void ensure( int needed ) throws IOException {
+            if( bytes.remaining() >= needed ) {
+                return;
+            }
+            bytes.compact();
+            while( bytes.position() < needed ) {
+                if( channel.read(bytes) < 0 ) {
+                    throw new EOFException("checkpoint ends early");
+                }
+            }
+            bytes.flip();
+        }
+
+        @Override public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package solver;
+
+/**
+    ` The set of push-level states a search has already seen. A state is the player's canonical
+    cell plus the sorted box cells.
+*/
+public interface ClosedSet {
+
+    /**
+        ` Adds a state.
+
+        @return true if the state was not in the set before
+    */
+    boolean add( int player, int[] boxes );
+
+    boolean contains( int player, int[] boxes );
+
+    long size();
+
+    /**
+        ` Heap bytes held by the set, including unused capacity.
+    */
+    long bytesUsed();
+
+    double loadFactor();
+
+    default double bytesPerState() {
+        return size() == 0 ? 0.0 : bytesUsed() / (double) size();
+    }
+}
@@ -0,0 +1,112 @@
+package solver;
+
+import java.util.*;
+
+import reader.FileReader;
+import reader.MapData;
+
+/**
+    ` Measures heap bytes per state of CompactClosedSet against a HashSet of small key objects
+    ( player + int[] boxes ), filled with the same states from a breadth-first push search.
+
+    Usage: java -cp src solver.ClosedSetBenchmark [mapName] [maxStates]
+*/
+public class ClosedSetBenchmark {
+
+    public static void main( String[] args ) {
+        String name = args.length > 0 ? args[0] : "original1";
+        int limit = args.length > 1 ? Integer.parseInt(args[1]) : 500000;
+
+        MapData mapData = new FileReader().readFile(name);
+        Board board = new Board(mapData.columns, mapData.rows, mapData.tiles, mapData.tiles);
+        List<int[]> states = collectStates(board, limit);
+        System.out.printf("%s: %d states%n", name, states.size());
+
+        long before = usedHeap();
+        CompactClosedSet compact = new CompactClosedSet(board);
+        for( int[] state : states ) {
+            compact.add(state[0], Arrays.copyOfRange(state, 1, state.length));
+        }
+        long compactBytes = usedHeap() - before;
+
+        before = usedHeap();
+        Set<Key> objects = new HashSet<>();
+        for( int[] state : states ) {
+            objects.add(new Key(state[0], Arrays.copyOfRange(state, 1, state.length)));
+        }
+        long objectBytes = usedHeap() - before;
+
+        System.out.printf("CompactClosedSet: %6.1f B/state measured, %5.1f B/state reported, %4.1f B encoded, load %.2f%n",
+            compactBytes / (double) states.size(), compact.bytesPerState(), compact.encodedBytesPerState(), compact.loadFactor());
+        System.out.printf("HashSet<Key>:     %6.1f B/state measured%n", objectBytes / (double) states.size());
+        System.out.printf("states per GB: %.1fx more with the compact set%n", objectBytes / (double) compactBytes);
+
+        // - Keep both sets reachable until after the measurements
+        if( compact.size() != objects.size() ) {
+            System.out.println("size mismatch: " + compact.size() + " vs " + objects.size());
+        }
+    }
+
+    /**
+        ` Breadth-first push search, recording each new state as { player, boxes... }.
+    */
+    private static List<int[]> collectStates( Board board, int limit ) {
+        PushExpander expander = new PushExpander(board);
+        Set<Key> seen = new HashSet<>();
+        List<int[]> states = new ArrayList<>();
+        ArrayDeque<int[]> queue = new ArrayDeque<>();
+
+        int[] start = new int[board.boxes.length + 1];
+        start[0] = expander.normalize(board.player, board.boxes);
+        System.arraycopy(board.boxes, 0, start, 1, board.boxes.length);
+        queue.add(start);
+        seen.add(new Key(start[0], board.boxes));
+
+        int[] pushes = new int[4 * board.boxes.length];
+        while( !queue.isEmpty() && states.size() < limit ) {
+            int[] state = queue.poll();
+            states.add(state);
+
+            int[] boxes = Arrays.copyOfRange(state, 1, state.length);
+            int count = expander.generate(state[0], boxes, pushes);
+            for( int i = 0; i < count; i++ ) {
+                int[] next = new int[state.length];
+                int[] nextBoxes = new int[boxes.length];
+                int player = expander.apply(boxes, pushes[i], nextBoxes);
+                next[0] = expander.normalize(player, nextBoxes);
+                System.arraycopy(nextBoxes, 0, next, 1, nextBoxes.length);
+
+                if( seen.add(new Key(next[0], nextBoxes)) ) {
+                    queue.add(next);
+                }
+            }
+        }
+        return states;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for( int i = 0; i < 3; i++ ) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static class Key {
+        private int player;
+        private int[] boxes;
+
+        Key( int player, int[] boxes ) {
+            this.player = player;
+            this.boxes = boxes;
+        }
+
+        @Override public boolean equals( Object other ) {
+            return other instanceof Key && ((Key) other).player == player && Arrays.equals(((Key) other).boxes, boxes);
+        }
+
+        @Override public int hashCode() {
+            return 31 * Arrays.hashCode(boxes) + player;
+        }
+    }
+}
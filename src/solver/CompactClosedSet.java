@@ -0,0 +1,321 @@
+package solver;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+    ` An exact closed set that stores every state as a short byte string.
+
+    The box list is turned into its combinatorial rank among all ways to place the boxes on the
+    non-dead squares ( the combinatorial number system ), written in the fewest bytes that can
+    hold the largest rank. When that rank does not fit in a long the box squares are written as
+    varint gaps instead. The player's canonical cell follows as a varint.
+
+    Encodings are appended to large long[] slabs, prefixed by their length, and found through an
+    open-addressing table of slab offsets that also keeps a few hash bits to skip most byte
+    comparisons. There is no object per state.
+*/
+public class CompactClosedSet implements ClosedSet {
+
+    /*|************************************************************
+                              Attributes
+    ***************************************************************/
+    private static final int SLAB_SHIFT = 20;                   // 1 MB slabs
+    private static final int SLAB_BYTES = 1 << SLAB_SHIFT;
+    private static final int OFFSET_BITS = 40;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+    private static final double MAX_LOAD = 0.75;
+
+    private int[] boxIndex;        // cell -> index among non-dead floor squares, -1 otherwise
+    private int[] playerIndex;     // cell -> index among floor squares, -1 otherwise
+    private int boxCount;
+    private long[][] binomial;     // binomial[n][k] for the rank, null when ranks overflow a long
+    private int rankBytes;
+
+    private long[][] slabs = new long[4][];
+    private int slabCount = 0;
+    private long writeOffset = 0;   // next free byte over all slabs
+
+    private long[] table;           // ( hash bits << 40 ) | ( offset + 1 ), 0 when empty
+    private long size = 0;
+
+    private byte[] scratch;
+    private int scratchLength;
+
+    /*|************************************************************
+                          Constructor Methods
+    ***************************************************************/
+    public CompactClosedSet( Board board ) {
+        this(board, 1 << 12);
+    }
+
+    public CompactClosedSet( Board board, int initialCapacity ) {
+        this.boxCount = board.boxes.length;
+        this.boxIndex = new int[board.size];
+        this.playerIndex = new int[board.size];
+
+        int live = 0, floor = 0;
+        for( int cell = 0; cell < board.size; cell++ ) {
+            boxIndex[cell] = board.floor[cell] && !board.dead[cell] ? live++ : -1;
+            playerIndex[cell] = board.floor[cell] ? floor++ : -1;
+        }
+
+        buildBinomials(live);
+        this.scratch = new byte[rankBytes + 5 * (boxCount + 2)];
+        this.table = new long[Integer.highestOneBit(Math.max(16, initialCapacity) - 1) << 1];
+    }
+
+    /**
+        ` Fills Pascal's triangle up to C( live, boxes ). If any entry overflows, ranks are not
+        used and the gap encoding takes over.
+    */
+    private void buildBinomials( int live ) {
+        long[][] table = new long[live + 1][boxCount + 1];
+        try {
+            for( int n = 0; n <= live; n++ ) {
+                table[n][0] = 1;
+                for( int k = 1; k <= Math.min(n, boxCount); k++ ) {
+                    table[n][k] = Math.addExact(table[n - 1][k - 1], table[n - 1][k]);
+                }
+            }
+        } catch( ArithmeticException ex ) {
+            binomial = null;
+            rankBytes = 0;
+            return;
+        }
+
+        binomial = table;
+        long largest = Math.max(1, table[live][boxCount] - 1);
+        rankBytes = (64 - Long.numberOfLeadingZeros(largest) + 7) / 8;
+    }
+
+    /*|************************************************************
+                            Class Methods
+    ***************************************************************/
+    @Override public boolean add( int player, int[] boxes ) {
+        // - Grow first: re-hashing reuses the scratch buffer
+        if( size + 1 > table.length * MAX_LOAD ) {
+            grow();
+        }
+
+        encode(player, boxes);
+        long hash = hash();
+        int slot = find(hash);
+        if( table[slot] != 0 ) {
+            return false;
+        }
+        table[slot] = (hash >>> OFFSET_BITS << OFFSET_BITS) | (append() + 1);
+        size++;
+        return true;
+    }
+
+    @Override public boolean contains( int player, int[] boxes ) {
+        encode(player, boxes);
+        return table[find(hash())] != 0;
+    }
+
+    @Override public long size() {
+        return size;
+    }
+
+    @Override public long bytesUsed() {
+        return (long) slabCount * SLAB_BYTES + table.length * 8L;
+    }
+
+    /**
+        ` Bytes actually written to the slabs per state, without index or spare capacity.
+    */
+    public double encodedBytesPerState() {
+        return size == 0 ? 0.0 : writeOffset / (double) size;
+    }
+
+    @Override public double loadFactor() {
+        return size / (double) table.length;
+    }
+
+    /*|************************************************************
+                              Checkpoints
+    ***************************************************************/
+    /**
+        ` Writes the slabs up to the last used byte and the index table as they are.
+    */
+    public void writeTo( Checkpoint.Output out ) throws IOException {
+        out.writeLong(size);
+        out.writeLong(writeOffset);
+        out.writeInt(slabCount);
+        for( int i = 0; i < slabCount; i++ ) {
+            long used = Math.min(SLAB_BYTES, writeOffset - ((long) i << SLAB_SHIFT));
+            out.writeLongs(slabs[i], (int) ((used + 7) >>> 3));
+        }
+        out.writeInt(table.length);
+        out.writeLongs(table, table.length);
+    }
+
+    /**
+        ` Replaces the contents with a set written by writeTo for the same board.
+    */
+    public void readFrom( Checkpoint.Input in ) throws IOException {
+        size = in.readLong();
+        writeOffset = in.readLong();
+        slabCount = in.readInt();
+        slabs = new long[Math.max(4, slabCount)][];
+        for( int i = 0; i < slabCount; i++ ) {
+            long used = Math.min(SLAB_BYTES, writeOffset - ((long) i << SLAB_SHIFT));
+            slabs[i] = new long[SLAB_BYTES / 8];
+            in.readLongs(slabs[i], (int) ((used + 7) >>> 3));
+        }
+        table = new long[in.readInt()];
+        in.readLongs(table, table.length);
+    }
+
+    /*|************************************************************
+                               Encoding
+    ***************************************************************/
+    private void encode( int player, int[] boxes ) {
+        scratchLength = 0;
+
+        if( binomial != null ) {
+            // - Combinatorial number system: sum of C( index_i, i + 1 ) over the sorted boxes
+            long rank = 0;
+            for( int i = 0; i < boxes.length; i++ ) {
+                rank += binomial[boxIndex[boxes[i]]][i + 1];
+            }
+            for( int i = 0; i < rankBytes; i++ ) {
+                scratch[scratchLength++] = (byte) (rank >>> (8 * i));
+            }
+        } else {
+            int previous = -1;
+            for( int box : boxes ) {
+                writeVarint(boxIndex[box] - previous - 1);
+                previous = boxIndex[box];
+            }
+        }
+        writeVarint(playerIndex[player]);
+    }
+
+    private void writeVarint( int value ) {
+        while( value >= 0x80 ) {
+            scratch[scratchLength++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        scratch[scratchLength++] = (byte) value;
+    }
+
+    private long hash() {
+        long hash = 0xcbf29ce484222325L;
+        for( int i = 0; i < scratchLength; i++ ) {
+            hash = (hash ^ (scratch[i] & 0xff)) * 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix( long hash ) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /*|************************************************************
+                             Slab Storage
+    ***************************************************************/
+    /**
+        ` Copies the scratch encoding into the slabs behind a length byte.
+
+        @return the offset of the length byte
+    */
+    private long append() {
+        long last = writeOffset + scratchLength;
+
+        // - Entries never straddle two slabs; skip to the next slab when this one is too full
+        if( (last >>> SLAB_SHIFT) != (writeOffset >>> SLAB_SHIFT) ) {
+            writeOffset = (last >>> SLAB_SHIFT) << SLAB_SHIFT;
+        }
+        if( (writeOffset >>> SLAB_SHIFT) >= slabCount ) {
+            if( slabCount == slabs.length ) {
+                slabs = Arrays.copyOf(slabs, slabCount * 2);
+            }
+            slabs[slabCount++] = new long[SLAB_BYTES / 8];
+        }
+
+        long offset = writeOffset;
+        putByte(writeOffset++, scratchLength);
+        for( int i = 0; i < scratchLength; i++ ) {
+            putByte(writeOffset++, scratch[i]);
+        }
+        return offset;
+    }
+
+    private void putByte( long offset, int value ) {
+        long[] slab = slabs[(int) (offset >>> SLAB_SHIFT)];
+        int index = (int) ((offset & (SLAB_BYTES - 1)) >>> 3);
+        int shift = (int) (offset & 7) * 8;
+        slab[index] = (slab[index] & ~(0xffL << shift)) | ((long) (value & 0xff) << shift);
+    }
+
+    private int getByte( long offset ) {
+        long[] slab = slabs[(int) (offset >>> SLAB_SHIFT)];
+        return (int) (slab[(int) ((offset & (SLAB_BYTES - 1)) >>> 3)] >>> ((offset & 7) * 8)) & 0xff;
+    }
+
+    /*|************************************************************
+                            Index Table
+    ***************************************************************/
+    /**
+        ` Linear probing: returns the slot holding the scratch encoding, or the empty slot where
+        it would go.
+    */
+    private int find( long hash ) {
+        int mask = table.length - 1;
+        long bits = hash >>> OFFSET_BITS;
+
+        for( int slot = (int) hash & mask; ; slot = (slot + 1) & mask ) {
+            long entry = table[slot];
+            if( entry == 0 ) {
+                return slot;
+            }
+            if( entry >>> OFFSET_BITS == bits && matches((entry & OFFSET_MASK) - 1) ) {
+                return slot;
+            }
+        }
+    }
+
+    private boolean matches( long offset ) {
+        if( getByte(offset) != scratchLength ) {
+            return false;
+        }
+        for( int i = 0; i < scratchLength; i++ ) {
+            if( getByte(offset + 1 + i) != (scratch[i] & 0xff) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+        ` Doubles the table, re-hashing every entry from its stored bytes.
+    */
+    private void grow() {
+        long[] old = table;
+        table = new long[old.length * 2];
+        int mask = table.length - 1;
+
+        for( long entry : old ) {
+            if( entry == 0 ) {
+                continue;
+            }
+            long offset = (entry & OFFSET_MASK) - 1;
+            scratchLength = getByte(offset);
+            for( int i = 0; i < scratchLength; i++ ) {
+                scratch[i] = (byte) getByte(offset + 1 + i);
+            }
+
+            long hash = hash();
+            int slot = (int) hash & mask;
+            while( table[slot] != 0 ) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = entry;
+        }
+    }
+}
@@ -0,0 +1,490 @@
+package solver;
+
+import java.util.*;
+
+/**
+    ` Solves many-box levels one goal at a time. The floor is split into rooms at its
+    articulation cells ( the doors: squares whose loss disconnects the floor ), the goals are
+    put in a filling order, and each goal becomes a subproblem: one box, the goal, and every
+    other box turned into a wall. A subproblem is a tiny push-level A*, so the work grows with
+    the number of boxes rather than with the size of the joint state space.
+
+    Goals are filled in PackingOrder layers when the level has a goal room, and otherwise
+    corners first and doors last, so a filled goal rarely stands in the way of a later one.
+    Candidate boxes for a goal come from its own room first, then by push distance. When no
+    single box can be brought in, the subproblem is coupled with the boxes in the way, up to
+    config.subproblemBoxes of them. When that fails too, a full push-level search takes over
+    from the current position, and then from the start.
+
+    The partial move strings are stitched together in order; SokoBot shortens the result.
+*/
+public class DecompositionSearch {
+
+    private static final int CANDIDATES = 3;    // boxes tried for a goal before coupling
+
+    /*|************************************************************
+                              Attributes
+    ***************************************************************/
+    private Board board;
+    private SolverConfig config;
+    private SolveStats stats;
+
+    private int[] room;                 // room id per floor cell, -1 for doors and walls
+    private boolean[] door;             // articulation cells of the floor
+    private int[][] pullDistance;       // pushes from each cell to one goal, by goal index, boxes ignored
+    private int[] goalOrder;            // goal indices in filling order
+
+    // - Current position of the stitched solution
+    private int player;
+    private int[] boxes;                // box cells, unsorted; index is the box's identity
+    private boolean[] boxPlaced;        // box sits on a goal it was brought to
+    private boolean[] goalFilled;
+    private StringBuilder moves = new StringBuilder();
+
+    /*|************************************************************
+                          Constructor Methods
+    ***************************************************************/
+    public DecompositionSearch( Board board, SolverConfig config, SolveStats stats ) {
+        this.board = board;
+        this.config = config;
+        this.stats = stats;
+    }
+
+    /*|************************************************************
+                              Main Method
+    ***************************************************************/
+    /**
+        ` Returns a solution, or null when neither the subproblems nor the fallback found one.
+    */
+    public String solve() {
+        if( board.boxes.length != board.goals.length ) {
+            return fallBack(null);
+        }
+
+        findRooms();
+        pullDistances();
+        orderGoals();
+
+        player = board.player;
+        boxes = board.boxes.clone();
+        boxPlaced = new boolean[boxes.length];
+        goalFilled = new boolean[board.goals.length];
+
+        // - Boxes that start on a goal stay there unless a coupled subproblem needs them
+        for( int b = 0; b < boxes.length; b++ ) {
+            int g = Arrays.binarySearch(board.goals, boxes[b]);
+            if( g >= 0 ) {
+                boxPlaced[b] = true;
+                goalFilled[g] = true;
+            }
+        }
+
+        for( int g : goalOrder ) {
+            if( goalFilled[g] ) {
+                continue;
+            }
+            if( stats.overLimit() || !fill(g) ) {
+                return stats.limitReached ? null : fallBack(currentTiles());
+            }
+        }
+        return moves.toString();
+    }
+
+    /**
+        ` Brings a box to goal g, alone if possible. Otherwise the subproblem is coupled: the box
+        that stands nearest to the first candidate on the edge of the player's area joins it,
+        with its goal when it is a placed box and with the next open goal when it is not, until
+        the group solves or reaches config.subproblemBoxes.
+    */
+    private boolean fill( int g ) {
+        List<Integer> candidates = candidates(g);
+        if( candidates.isEmpty() ) {
+            return false;
+        }
+        for( int k = 0; k < Math.min(CANDIDATES, candidates.size()); k++ ) {
+            if( trySubproblem(new int[] { candidates.get(k) }, new int[] { g }) ) {
+                return true;
+            }
+        }
+
+        List<Integer> group = new ArrayList<>();
+        List<Integer> groupGoals = new ArrayList<>();
+        group.add(candidates.get(0));
+        groupGoals.add(g);
+        while( group.size() < config.subproblemBoxes ) {
+            int blocker = nearestBlocker(group);
+            if( blocker < 0 ) {
+                return false;
+            }
+            int goal = boxPlaced[blocker] ? Arrays.binarySearch(board.goals, boxes[blocker]) : nextOpenGoal(groupGoals);
+            if( goal < 0 ) {
+                return false;
+            }
+            group.add(blocker);
+            groupGoals.add(goal);
+
+            stats.coupledSubproblems++;
+            if( trySubproblem(toArray(group), toArray(groupGoals)) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+        ` The box outside the group, next to the area the player can walk with the group's boxes
+        out of the way, that is closest to the group's first box; -1 when there is none.
+    */
+    private int nearestBlocker( List<Integer> group ) {
+        boolean[] blocked = new boolean[board.size];
+        for( int box : boxes ) {
+            blocked[box] = true;
+        }
+        for( int b : group ) {
+            blocked[boxes[b]] = false;
+        }
+
+        boolean[] reached = new boolean[board.size];
+        int[] queue = new int[board.size];
+        int head = 0, tail = 0;
+        queue[tail++] = player;
+        reached[player] = true;
+        int target = boxes[group.get(0)];
+        int best = -1;
+        int bestDistance = Integer.MAX_VALUE;
+
+        while( head < tail ) {
+            int cell = queue[head++];
+            for( int i = 0; i < 4; i++ ) {
+                int next = cell + board.offset[i];
+                if( !board.isFloor(next) || reached[next] ) {
+                    continue;
+                }
+                reached[next] = true;
+                if( !blocked[next] ) {
+                    queue[tail++] = next;
+                    continue;
+                }
+                int distance = board.walks != null ? board.walks.distance(next, target)
+                    : Math.abs(board.row(next) - board.row(target)) + Math.abs(board.col(next) - board.col(target));
+                if( distance < bestDistance ) {
+                    bestDistance = distance;
+                    best = boxAt(next);
+                }
+            }
+        }
+        return best;
+    }
+
+    private int nextOpenGoal( List<Integer> taken ) {
+        for( int g : goalOrder ) {
+            if( !goalFilled[g] && !taken.contains(g) ) {
+                return g;
+            }
+        }
+        return -1;
+    }
+
+    private int boxAt( int cell ) {
+        for( int b = 0; b < boxes.length; b++ ) {
+            if( boxes[b] == cell ) {
+                return b;
+            }
+        }
+        return -1;
+    }
+
+    private static int[] toArray( List<Integer> list ) {
+        int[] array = new int[list.size()];
+        for( int i = 0; i < array.length; i++ ) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+        ` Unplaced boxes that can be pushed to goal g, boxes in the goal's room first and then by
+        push distance.
+    */
+    private List<Integer> candidates( int g ) {
+        int goalRoom = room[board.goals[g]];
+        List<Integer> list = new ArrayList<>();
+        for( int b = 0; b < boxes.length; b++ ) {
+            if( !boxPlaced[b] && pullDistance[g][boxes[b]] != Integer.MAX_VALUE ) {
+                list.add(b);
+            }
+        }
+        list.sort((a, b) -> {
+            int roomA = goalRoom >= 0 && room[boxes[a]] == goalRoom ? 0 : 1;
+            int roomB = goalRoom >= 0 && room[boxes[b]] == goalRoom ? 0 : 1;
+            if( roomA != roomB ) {
+                return roomA - roomB;
+            }
+            return Integer.compare(pullDistance[g][boxes[a]], pullDistance[g][boxes[b]]);
+        });
+        return list;
+    }
+
+    /*|************************************************************
+                              Subproblems
+    ***************************************************************/
+    /**
+        ` Solves one subproblem with every box outside the group as a wall. On success the moves
+        are appended, the position is advanced and the group's goals are marked filled.
+    */
+    private boolean trySubproblem( int[] group, int[] groupGoals ) {
+        char[][] tiles = new char[board.height][board.width];
+        boolean[] inGroup = new boolean[boxes.length];
+        for( int b : group ) {
+            inGroup[b] = true;
+        }
+        for( int cell = 0; cell < board.size; cell++ ) {
+            tiles[board.row(cell)][board.col(cell)] = board.floor[cell] ? ' ' : '#';
+        }
+        for( int g : groupGoals ) {
+            set(tiles, board.goals[g], '.');
+        }
+        for( int b = 0; b < boxes.length; b++ ) {
+            if( inGroup[b] ) {
+                set(tiles, boxes[b], tiles[board.row(boxes[b])][board.col(boxes[b])] == '.' ? '*' : '$');
+            } else {
+                set(tiles, boxes[b], '#');
+            }
+        }
+        set(tiles, player, tiles[board.row(player)][board.col(player)] == '.' ? '+' : '@');
+
+        Board sub = new Board(board.width, board.height, tiles, tiles);
+        if( sub.boxes.length != group.length || sub.goals.length != groupGoals.length ) {
+            return false;   // the other boxes wall a group box or goal off from the player
+        }
+
+        SolverConfig subConfig = subConfig();
+        SolveStats subStats = new SolveStats();
+        subStats.startClock(subConfig);
+        int[] pushes = new PushSearch(sub, subConfig, subStats).search();
+        stats.expanded += subStats.expanded;
+        stats.generated += subStats.generated;
+        stats.subproblems++;
+        if( pushes == null ) {
+            return false;
+        }
+
+        String part = new SolutionOptimizer(sub).buildSolution(pushes);
+        if( part == null ) {
+            return false;
+        }
+        moves.append(part);
+
+        // - Replay the pushes on the real position; box identities follow the moved cells
+        for( int push : pushes ) {
+            int from = push >> 2;
+            int to = from + board.offset[push & 3];
+            for( int b : group ) {
+                if( boxes[b] == from ) {
+                    boxes[b] = to;
+                    break;
+                }
+            }
+            player = from;
+        }
+        for( int b : group ) {
+            boxPlaced[b] = true;
+        }
+        for( int g : groupGoals ) {
+            goalFilled[g] = true;
+        }
+        return true;
+    }
+
+    private SolverConfig subConfig() {
+        SolverConfig sub = new SolverConfig();
+        sub.mode = SolverConfig.MODE_PUSH_ASTAR;
+        sub.maxExpansions = config.subproblemExpansions;
+        sub.inertia = config.inertia;
+        sub.memoryThreshold = config.memoryThreshold;
+        sub.beamWidth = config.beamWidth;
+        return sub;
+    }
+
+    private void set( char[][] tiles, int cell, char tile ) {
+        tiles[board.row(cell)][board.col(cell)] = tile;
+    }
+
+    /*|************************************************************
+                               Fallback
+    ***************************************************************/
+    /**
+        ` Full push-level A* over the whole level: from the current position when the stitched
+        moves so far may still lead somewhere, and from the start if that fails as well.
+    */
+    private String fallBack( char[][] current ) {
+        stats.mode = config.mode + " -> " + SolverConfig.MODE_PUSH_ASTAR;
+        if( current != null ) {
+            Board rest = new Board(board.width, board.height, current, current);
+            int[] pushes = new PushSearch(rest, config, stats).search();
+            if( pushes != null ) {
+                return moves + new SolutionOptimizer(rest).buildSolution(pushes);
+            }
+            if( stats.limitReached ) {
+                return null;
+            }
+        }
+        return new PushSearch(board, config, stats).solve();
+    }
+
+    /**
+        ` The current position as tiles, every goal and box included.
+    */
+    private char[][] currentTiles() {
+        char[][] tiles = new char[board.height][board.width];
+        for( int cell = 0; cell < board.size; cell++ ) {
+            tiles[board.row(cell)][board.col(cell)] = !board.floor[cell] ? '#' : board.goal[cell] ? '.' : ' ';
+        }
+        for( int box : boxes ) {
+            set(tiles, box, board.goal[box] ? '*' : '$');
+        }
+        set(tiles, player, board.goal[player] ? '+' : '@');
+        return tiles;
+    }
+
+    /*|************************************************************
+                            Level Analysis
+    ***************************************************************/
+    /**
+        ` Finds the articulation cells of the floor with an iterative Tarjan DFS, then labels the
+        rooms left between them.
+    */
+    private void findRooms() {
+        int[] discovered = new int[board.size];
+        int[] low = new int[board.size];
+        int[] parentOf = new int[board.size];
+        int[] nextDir = new int[board.size];
+        int[] stack = new int[board.size];
+        door = new boolean[board.size];
+        int time = 0;
+
+        for( int root = 0; root < board.size; root++ ) {
+            if( !board.floor[root] || discovered[root] != 0 ) {
+                continue;
+            }
+            int rootChildren = 0;
+            int top = 0;
+            stack[top++] = root;
+            discovered[root] = low[root] = ++time;
+            parentOf[root] = -1;
+            nextDir[root] = 0;
+
+            while( top > 0 ) {
+                int cell = stack[top - 1];
+                if( nextDir[cell] < 4 ) {
+                    int next = cell + board.offset[nextDir[cell]++];
+                    if( !board.isFloor(next) || next == parentOf[cell] ) {
+                        continue;
+                    }
+                    if( discovered[next] == 0 ) {
+                        discovered[next] = low[next] = ++time;
+                        parentOf[next] = cell;
+                        nextDir[next] = 0;
+                        stack[top++] = next;
+                        if( cell == root ) {
+                            rootChildren++;
+                        }
+                    } else {
+                        low[cell] = Math.min(low[cell], discovered[next]);
+                    }
+                } else {
+                    top--;
+                    int up = parentOf[cell];
+                    if( up >= 0 ) {
+                        low[up] = Math.min(low[up], low[cell]);
+                        if( up != root && low[cell] >= discovered[up] ) {
+                            door[up] = true;
+                        }
+                    }
+                }
+            }
+            door[root] = rootChildren > 1;
+        }
+
+        // - Rooms: flood fills over the floor that stop at doors
+        room = new int[board.size];
+        Arrays.fill(room, -1);
+        int rooms = 0;
+        int[] queue = new int[board.size];
+        for( int start = 0; start < board.size; start++ ) {
+            if( !board.floor[start] || door[start] || room[start] >= 0 ) {
+                continue;
+            }
+            int head = 0, tail = 0;
+            queue[tail++] = start;
+            room[start] = rooms;
+            while( head < tail ) {
+                int cell = queue[head++];
+                for( int i = 0; i < 4; i++ ) {
+                    int next = cell + board.offset[i];
+                    if( board.isFloor(next) && !door[next] && room[next] < 0 ) {
+                        room[next] = rooms;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            rooms++;
+        }
+        stats.rooms = rooms;
+    }
+
+    /**
+        ` Pulls a lone box back from each goal, as Board does for all goals at once.
+    */
+    private void pullDistances() {
+        pullDistance = new int[board.goals.length][];
+        int[] queue = new int[board.size];
+        for( int g = 0; g < board.goals.length; g++ ) {
+            int[] distance = new int[board.size];
+            Arrays.fill(distance, Integer.MAX_VALUE);
+            int head = 0, tail = 0;
+            distance[board.goals[g]] = 0;
+            queue[tail++] = board.goals[g];
+            while( head < tail ) {
+                int cell = queue[head++];
+                for( int i = 0; i < 4; i++ ) {
+                    int next = cell + board.offset[i];
+                    if( board.isFloor(next) && board.isFloor(next + board.offset[i]) && distance[next] == Integer.MAX_VALUE ) {
+                        distance[next] = distance[cell] + 1;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            pullDistance[g] = distance;
+        }
+    }
+
+    /**
+        ` PackingOrder layers when there are any; otherwise doors last and, before them, goals
+        with more walls around them first.
+    */
+    private void orderGoals() {
+        PackingOrder packing = new PackingOrder(board);
+        Integer[] order = new Integer[board.goals.length];
+        int[] key = new int[board.goals.length];
+        for( int g = 0; g < order.length; g++ ) {
+            int cell = board.goals[g];
+            order[g] = g;
+            if( packing.isAvailable() ) {
+                key[g] = packing.rank[cell];
+            } else {
+                int walls = 0;
+                for( int i = 0; i < 4; i++ ) {
+                    walls += board.isFloor(cell + board.offset[i]) ? 0 : 1;
+                }
+                key[g] = (door[cell] ? 8 : 0) + 4 - walls;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(key[a], key[b]));
+
+        goalOrder = new int[order.length];
+        for( int i = 0; i < order.length; i++ ) {
+            goalOrder[i] = order[i];
+        }
+    }
+}
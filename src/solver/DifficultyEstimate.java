@@ -0,0 +1,244 @@
+package solver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+    ` A guess at how long a level takes to solve, from the static analysis of its Board alone,
+    so batches can run the cheap levels first and give each level a time budget. The features
+    are the box count, the free floor cells ( log ), the share of dead floor cells, the initial
+    push heuristic, and the share of floor cells in corridors ( at most two floor neighbours ).
+    The guess is a linear model of log( 1 + milliseconds ) over them.
+
+    Weights are kept per mode in a text file of "mode w0 w1 ..." lines, fitted by ridge least
+    squares on recorded runs ( RegressionHarness --calibrate ). A mode without a line uses
+    DEFAULT_WEIGHTS, fitted on push-astar over maps/ and the generated suite of seed 1.
+*/
+public class DifficultyEstimate {
+
+    public static final String DEFAULT_FILE = "difficulty-weights.txt";
+    public static final int FEATURES = 6;
+
+    // - Positions in the feature vector and in the weights
+    public static final int BIAS = 0;
+    public static final int BOXES = 1;
+    public static final int FREE_CELLS = 2;
+    public static final int DEAD_SHARE = 3;
+    public static final int HEURISTIC = 4;
+    public static final int CORRIDOR_SHARE = 5;
+
+    public static final double[] DEFAULT_WEIGHTS = { 0.31, 0.32, 0.35, 0.089, 0.051, -1.79 };
+
+    private static final double RIDGE = 0.01;   // keeps the fit stable on a few dozen levels
+
+    /*|************************************************************
+                              Attributes
+    ***************************************************************/
+    public final double[] features = new double[FEATURES];
+
+    /*|************************************************************
+                          Constructor Methods
+    ***************************************************************/
+    public DifficultyEstimate( Board board ) {
+        int floorCells = 0;
+        int deadCells = 0;
+        int corridorCells = 0;
+        for( int cell = 0; cell < board.size; cell++ ) {
+            if( !board.floor[cell] ) {
+                continue;
+            }
+            floorCells++;
+            if( board.dead[cell] ) {
+                deadCells++;
+            }
+            int neighbors = 0;
+            for( int i = 0; i < 4; i++ ) {
+                neighbors += board.isFloor(cell + board.offset[i]) ? 1 : 0;
+            }
+            if( neighbors <= 2 ) {
+                corridorCells++;
+            }
+        }
+
+        int h = new PushExpander(board).heuristic(board.boxes);
+        features[BIAS] = 1;
+        features[BOXES] = board.boxes.length;
+        features[FREE_CELLS] = Math.log(1 + Math.max(0, floorCells - board.boxes.length));
+        features[DEAD_SHARE] = floorCells == 0 ? 0 : deadCells / (double) floorCells;
+        features[HEURISTIC] = h == Integer.MAX_VALUE ? 0 : h;
+        features[CORRIDOR_SHARE] = floorCells == 0 ? 0 : corridorCells / (double) floorCells;
+    }
+
+    /**
+        ` Share of the floor cells with at most two floor neighbours.
+    */
+    public double corridorShare() {
+        return features[CORRIDOR_SHARE];
+    }
+
+    /*|************************************************************
+                              Prediction
+    ***************************************************************/
+    public double predictMillis( double[] weights ) {
+        double log = 0;
+        for( int i = 0; i < FEATURES; i++ ) {
+            log += weights[i] * features[i];
+        }
+        return Math.expm1(Math.max(0, Math.min(log, 30)));
+    }
+
+    /**
+        ` A time limit for one level: `factor` times the prediction, no less than minMillis and
+        no more than the configured limit ( when there is one ).
+    */
+    public long budgetMillis( double[] weights, double factor, long minMillis, long limitMillis ) {
+        long budget = (long) Math.max(minMillis, factor * predictMillis(weights));
+        return limitMillis > 0 ? Math.min(budget, limitMillis) : budget;
+    }
+
+    /*|************************************************************
+                              Calibration
+    ***************************************************************/
+    /**
+        ` Ridge least squares of log( 1 + millis ) on the features; the bias is not shrunk.
+    */
+    public static double[] fit( List<double[]> samples, List<Long> millis ) {
+        double[][] a = new double[FEATURES][FEATURES + 1];
+        for( int s = 0; s < samples.size(); s++ ) {
+            double[] x = samples.get(s);
+            double y = Math.log1p(millis.get(s));
+            for( int i = 0; i < FEATURES; i++ ) {
+                for( int j = 0; j < FEATURES; j++ ) {
+                    a[i][j] += x[i] * x[j];
+                }
+                a[i][FEATURES] += x[i] * y;
+            }
+        }
+        for( int i = 1; i < FEATURES; i++ ) {
+            a[i][i] += RIDGE * Math.max(1, samples.size());
+        }
+
+        // - Gauss-Jordan with partial pivoting
+        for( int col = 0; col < FEATURES; col++ ) {
+            int pivot = col;
+            for( int row = col + 1; row < FEATURES; row++ ) {
+                if( Math.abs(a[row][col]) > Math.abs(a[pivot][col]) ) {
+                    pivot = row;
+                }
+            }
+            double[] swap = a[col];
+            a[col] = a[pivot];
+            a[pivot] = swap;
+            if( Math.abs(a[col][col]) < 1e-12 ) {
+                return DEFAULT_WEIGHTS.clone();
+            }
+            for( int row = 0; row < FEATURES; row++ ) {
+                if( row == col ) {
+                    continue;
+                }
+                double factor = a[row][col] / a[col][col];
+                for( int k = col; k <= FEATURES; k++ ) {
+                    a[row][k] -= factor * a[col][k];
+                }
+            }
+        }
+
+        double[] weights = new double[FEATURES];
+        for( int i = 0; i < FEATURES; i++ ) {
+            weights[i] = a[i][FEATURES] / a[i][i];
+        }
+        return weights;
+    }
+
+    /**
+        ` Spearman rank correlation of two equally long series, ties given their mean rank.
+    */
+    public static double rankCorrelation( double[] x, double[] y ) {
+        int n = x.length;
+        if( n < 2 ) {
+            return 0;
+        }
+        double[] rx = ranks(x);
+        double[] ry = ranks(y);
+        double mean = (n - 1) / 2.0;
+        double sxy = 0, sxx = 0, syy = 0;
+        for( int i = 0; i < n; i++ ) {
+            sxy += (rx[i] - mean) * (ry[i] - mean);
+            sxx += (rx[i] - mean) * (rx[i] - mean);
+            syy += (ry[i] - mean) * (ry[i] - mean);
+        }
+        return sxx == 0 || syy == 0 ? 0 : sxy / Math.sqrt(sxx * syy);
+    }
+
+    private static double[] ranks( double[] values ) {
+        Integer[] order = new Integer[values.length];
+        for( int i = 0; i < order.length; i++ ) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+        double[] rank = new double[values.length];
+        for( int i = 0; i < order.length; ) {
+            int j = i;
+            while( j + 1 < order.length && values[order[j + 1]] == values[order[i]] ) {
+                j++;
+            }
+            for( int k = i; k <= j; k++ ) {
+                rank[order[k]] = (i + j) / 2.0;
+            }
+            i = j + 1;
+        }
+        return rank;
+    }
+
+    /*|************************************************************
+                              Weight File
+    ***************************************************************/
+    /**
+        ` The weights of one mode from the file, or DEFAULT_WEIGHTS when it has none.
+    */
+    public static double[] readWeights( Path path, String mode ) {
+        try {
+            if( Files.exists(path) ) {
+                for( String line : Files.readAllLines(path) ) {
+                    String[] fields = line.trim().split("\\s+");
+                    if( fields.length == FEATURES + 1 && fields[0].equals(mode) ) {
+                        double[] weights = new double[FEATURES];
+                        for( int i = 0; i < FEATURES; i++ ) {
+                            weights[i] = Double.parseDouble(fields[i + 1]);
+                        }
+                        return weights;
+                    }
+                }
+            }
+        } catch( IOException | NumberFormatException ex ) {
+            ex.printStackTrace();
+        }
+        return DEFAULT_WEIGHTS.clone();
+    }
+
+    /**
+        ` Replaces the line of one mode; other modes stay.
+    */
+    public static void writeWeights( Path path, String mode, double[] weights ) throws IOException {
+        List<String> lines = new ArrayList<>();
+        if( Files.exists(path) ) {
+            for( String line : Files.readAllLines(path) ) {
+                if( !line.startsWith(mode + " ") ) {
+                    lines.add(line);
+                }
+            }
+        }
+        StringBuilder line = new StringBuilder(mode);
+        for( double weight : weights ) {
+            line.append(' ').append(String.format(Locale.ROOT, "%.4f", weight));
+        }
+        lines.add(line.toString());
+        Files.write(path, lines);
+    }
+}
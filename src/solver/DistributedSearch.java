@@ -0,0 +1,321 @@
+package solver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+    ` Coordinator of a push-level breadth-first search spread over worker processes
+    ( DistributedWorker ), on this machine or on others.
+
+    Every state belongs to one worker, picked by its hash, and only that worker keeps it in its
+    closed set. Workers expand their part of a layer, send each successor to its owner in
+    batches over a mesh of TCP connections, and mark the end of the layer on every connection.
+    Once a worker has all its end marks it knows every state of the next layer has arrived,
+    files the new ones and reports their count. A layer is over when every worker has
+    reported, and the search when a worker found a solved state or a layer came out empty.
+    The pushes are then traced back through the parent links the workers keep.
+
+    The coordinator either starts its workers as local processes or waits for workers started
+    by hand with: java -cp src solver.DistributedWorker <coordinator host> <port>
+*/
+public class DistributedSearch {
+
+    /*|************************************************************
+                               Protocol
+    ***************************************************************/
+    // - Worker -> coordinator
+    static final int HELLO = 1;          // [ listen port ]
+    static final int LAYER_DONE = 2;     // [ new states, expanded, solved state index or -1 ]
+    static final int TRACED = 3;         // [ push, parent owner, parent index ]
+
+    // - Coordinator -> worker
+    static final int INIT = 10;          // [ id, workers, width, height, tiles..., ( address, port ) per worker ]
+    static final int EXPAND = 11;        // []
+    static final int TRACE = 12;         // [ state index ]
+    static final int STOP = 13;          // []
+
+    // - Worker -> worker
+    static final int PEER = 20;          // [ sender id ]
+    static final int STATES = 21;        // [ records... ], see DistributedWorker
+    static final int LAYER_END = 22;     // []
+
+    private static final long STOP_WAIT_MILLIS = 5000;  // for a spawned worker to exit after STOP
+
+    /**
+        ` One message: a type and a run of ints. On the wire it is the type byte, the int count,
+        and the ints, big-endian.
+    */
+    static class Frame {
+        int type;
+        int[] data;
+        int length;
+
+        Frame( int type, int[] data, int length ) {
+            this.type = type;
+            this.data = data;
+            this.length = length;
+        }
+
+        static void write( DataOutputStream out, int type, int[] data, int length ) throws IOException {
+            out.writeByte(type);
+            out.writeInt(length);
+            for( int i = 0; i < length; i++ ) {
+                out.writeInt(data[i]);
+            }
+        }
+
+        static void write( DataOutputStream out, int type, int... data ) throws IOException {
+            write(out, type, data, data.length);
+            out.flush();
+        }
+
+        static Frame read( DataInputStream in ) throws IOException {
+            int type = in.readUnsignedByte();
+            int length = in.readInt();
+            byte[] bytes = new byte[length * Integer.BYTES];
+            in.readFully(bytes);
+            int[] data = new int[length];
+            ByteBuffer.wrap(bytes).asIntBuffer().get(data);
+            return new Frame(type, data, length);
+        }
+    }
+
+    /**
+        ` Which worker owns a state, from a hash of its canonical player cell and boxes.
+    */
+    static int owner( int player, int[] boxes, int workers ) {
+        long hash = player;
+        for( int box : boxes ) {
+            hash = hash * 0x100000001b3L + box;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return (int) Math.floorMod(hash, (long) workers);
+    }
+
+    /**
+        ` Turns a board back into tiles, which is how workers receive the level.
+    */
+    static char[][] tiles( Board board ) {
+        char[][] tiles = new char[board.height][board.width];
+        boolean[] boxAt = new boolean[board.size];
+        for( int box : board.boxes ) {
+            boxAt[box] = true;
+        }
+        for( int cell = 0; cell < board.size; cell++ ) {
+            char tile;
+            if( !board.floor[cell] ) {
+                tile = '#';
+            } else if( boxAt[cell] ) {
+                tile = board.goal[cell] ? '*' : '$';
+            } else if( cell == board.player ) {
+                tile = board.goal[cell] ? '+' : '@';
+            } else {
+                tile = board.goal[cell] ? '.' : ' ';
+            }
+            tiles[board.row(cell)][board.col(cell)] = tile;
+        }
+        return tiles;
+    }
+
+    /*|************************************************************
+                              Attributes
+    ***************************************************************/
+    private Board board;
+    private SolverConfig config;
+    private SolveStats stats;
+
+    private List<Process> processes = new ArrayList<>();
+    private List<Socket> sockets = new ArrayList<>();
+    private List<DataInputStream> inputs = new ArrayList<>();
+    private List<DataOutputStream> outputs = new ArrayList<>();
+
+    /*|************************************************************
+                          Constructor Methods
+    ***************************************************************/
+    public DistributedSearch( Board board, SolverConfig config, SolveStats stats ) {
+        this.board = board;
+        this.config = config;
+        this.stats = stats;
+    }
+
+    /*|************************************************************
+                              Main Method
+    ***************************************************************/
+    /**
+        ` Runs the search and turns the pushes into a move string.
+    */
+    public String solve() {
+        int[] pushes = search();
+        return pushes == null ? null : new SolutionOptimizer(board).buildSolution(pushes);
+    }
+
+    /**
+        ` Runs the search and returns the pushes of a shortest solution, or null if there is none.
+    */
+    public int[] search() {
+        if( board.isSolved(board.boxes) ) {
+            return new int[0];
+        }
+        // - A box on a dead square has no closed set encoding; such a level has no solution anyway
+        if( new PushExpander(board).heuristic(board.boxes) == Integer.MAX_VALUE ) {
+            return null;
+        }
+
+        try( ServerSocket server = new ServerSocket(config.coordinatorPort) ) {
+            if( config.spawnWorkers ) {
+                spawnWorkers(server.getLocalPort());
+            }
+            connectWorkers(server);
+
+            for( int layer = 1; ; layer++ ) {
+                for( DataOutputStream out : outputs ) {
+                    Frame.write(out, EXPAND);
+                }
+
+                long fresh = 0;
+                int solvedOwner = -1;
+                int solvedIndex = -1;
+                for( int w = 0; w < inputs.size(); w++ ) {
+                    Frame done = expect(w, LAYER_DONE);
+                    fresh += done.data[0];
+                    stats.expanded += done.data[1];
+                    if( done.data[2] >= 0 ) {
+                        solvedOwner = w;
+                        solvedIndex = done.data[2];
+                    }
+                }
+                stats.generated += fresh;
+
+                if( solvedOwner >= 0 ) {
+                    return trace(solvedOwner, solvedIndex, layer);
+                }
+                if( fresh == 0 || stats.overLimit() ) {
+                    return null;
+                }
+            }
+        } catch( IOException ex ) {
+            ex.printStackTrace(System.err);
+            return null;
+        } finally {
+            shutDown();
+        }
+    }
+
+    /**
+        ` Follows the parent links back from a solved state, one owner at a time.
+    */
+    private int[] trace( int owner, int index, int depth ) throws IOException {
+        int[] pushes = new int[depth];
+        for( int i = depth - 1; i >= 0; i-- ) {
+            Frame.write(outputs.get(owner), TRACE, index);
+            Frame step = expect(owner, TRACED);
+            pushes[i] = step.data[0];
+            owner = step.data[1];
+            index = step.data[2];
+        }
+        return pushes;
+    }
+
+    /*|************************************************************
+                               Workers
+    ***************************************************************/
+    private void spawnWorkers( int port ) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        for( int i = 0; i < config.workers; i++ ) {
+            ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                DistributedWorker.class.getName(), "localhost", String.valueOf(port), String.valueOf(config.batchStates));
+            builder.inheritIO();
+            processes.add(builder.start());
+        }
+    }
+
+    /**
+        ` Accepts config.workers workers, then tells each its id, the level and where its peers
+        listen. Peer addresses are sent as IPv4 ints, so workers on other hosts need IPv4.
+    */
+    private void connectWorkers( ServerSocket server ) throws IOException {
+        int[] addresses = new int[config.workers];
+        int[] ports = new int[config.workers];
+        for( int w = 0; w < config.workers; w++ ) {
+            Socket socket = server.accept();
+            socket.setTcpNoDelay(true);
+            sockets.add(socket);
+            inputs.add(new DataInputStream(new BufferedInputStream(socket.getInputStream())));
+            outputs.add(new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())));
+
+            InetAddress address = socket.getInetAddress();
+            addresses[w] = address.isLoopbackAddress() ? 0x7f000001
+                : ByteBuffer.wrap(address.getAddress(), address.getAddress().length - 4, 4).getInt();
+            ports[w] = expect(w, HELLO).data[0];
+        }
+
+        char[][] tiles = tiles(board);
+        for( int w = 0; w < config.workers; w++ ) {
+            int[] init = new int[4 + board.size + 2 * config.workers];
+            int n = 0;
+            init[n++] = w;
+            init[n++] = config.workers;
+            init[n++] = board.width;
+            init[n++] = board.height;
+            for( int r = 0; r < board.height; r++ ) {
+                for( int c = 0; c < board.width; c++ ) {
+                    init[n++] = tiles[r][c];
+                }
+            }
+            for( int peer = 0; peer < config.workers; peer++ ) {
+                init[n++] = addresses[peer];
+                init[n++] = ports[peer];
+            }
+            Frame.write(outputs.get(w), INIT, init);
+        }
+    }
+
+    private Frame expect( int worker, int type ) throws IOException {
+        Frame frame = Frame.read(inputs.get(worker));
+        if( frame.type != type ) {
+            throw new IOException("worker " + worker + " sent message " + frame.type + ", expected " + type);
+        }
+        return frame;
+    }
+
+    private void shutDown() {
+        for( DataOutputStream out : outputs ) {
+            try {
+                Frame.write(out, STOP);
+            } catch( IOException ex ) {
+                // - The worker is gone already
+            }
+        }
+        for( Socket socket : sockets ) {
+            try {
+                socket.close();
+            } catch( IOException ex ) {
+                ex.printStackTrace(System.err);
+            }
+        }
+        // - A worker blocked on a dead peer never sees STOP; it is killed after a while
+        for( Process process : processes ) {
+            try {
+                if( !process.waitFor(STOP_WAIT_MILLIS, TimeUnit.MILLISECONDS) ) {
+                    process.destroyForcibly();
+                }
+            } catch( InterruptedException ex ) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
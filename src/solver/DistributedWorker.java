@@ -0,0 +1,305 @@
+package solver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import solver.DistributedSearch.Frame;
+
+/**
+    ` One worker of a DistributedSearch. It owns the states whose hash picks it: their closed
+    set entries, and for each one the parent link ( owner, index, push ) needed to trace a
+    solution back.
+
+    A state on the wire is the record { player, boxes..., parent owner, parent index, push },
+    already normalized by the sender, and records travel in STATES frames of up to
+    config.batchStates. One reader thread per peer queues whatever arrives, so sending never
+    waits on a peer that is busy sending too.
+
+    Usage: java -cp src solver.DistributedWorker <coordinator host> <port> [batchStates]
+*/
+public class DistributedWorker {
+
+    /*|************************************************************
+                              Attributes
+    ***************************************************************/
+    private int id;
+    private int workers;
+    private int batchStates;
+    private Board board;
+    private PushExpander expander;
+    private CompactClosedSet closed;
+    private int recordLength;
+
+    private DataInputStream coordinatorIn;
+    private DataOutputStream coordinatorOut;
+    private DataOutputStream[] peerOut;
+    private BlockingQueue<Frame> inbox = new LinkedBlockingQueue<>();
+
+    // - Parent links of every owned state, by local index
+    private int stateCount = 0;
+    private int[] parentOwner = new int[1024];
+    private int[] parentIndex = new int[1024];
+    private int[] pushOf = new int[1024];
+
+    // - Layer being expanded and the next one, as { index, player, boxes... } records
+    private int[] frontier = new int[0];
+    private int frontierCount = 0;
+    private int[] next = new int[1024];
+    private int nextCount = 0;
+    private int solvedIndex = -1;
+
+    // - Outgoing batches per worker
+    private int[][] batches;
+    private int[] batchFill;
+
+    /*|************************************************************
+                              Main Method
+    ***************************************************************/
+    public static void main( String[] args ) {
+        int batchStates = args.length > 2 ? Integer.parseInt(args[2]) : new SolverConfig().batchStates;
+        try {
+            new DistributedWorker(batchStates).run(args[0], Integer.parseInt(args[1]));
+        } catch( IOException | InterruptedException ex ) {
+            ex.printStackTrace(System.err);
+        }
+    }
+
+    public DistributedWorker( int batchStates ) {
+        this.batchStates = batchStates;
+    }
+
+    /**
+        ` Joins the coordinator and serves it until it says STOP or goes away.
+    */
+    public void run( String host, int port ) throws IOException, InterruptedException {
+        try( Socket coordinator = new Socket(host, port); ServerSocket listener = new ServerSocket(0) ) {
+            coordinator.setTcpNoDelay(true);
+            coordinatorIn = new DataInputStream(new BufferedInputStream(coordinator.getInputStream()));
+            coordinatorOut = new DataOutputStream(new BufferedOutputStream(coordinator.getOutputStream()));
+            Frame.write(coordinatorOut, DistributedSearch.HELLO, listener.getLocalPort());
+
+            Frame init = Frame.read(coordinatorIn);
+            setUp(init);
+            connectPeers(init, listener);
+
+            while( true ) {
+                Frame command = Frame.read(coordinatorIn);
+                if( command.type == DistributedSearch.EXPAND ) {
+                    expandLayer();
+                } else if( command.type == DistributedSearch.TRACE ) {
+                    int index = command.data[0];
+                    Frame.write(coordinatorOut, DistributedSearch.TRACED, pushOf[index], parentOwner[index], parentIndex[index]);
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+
+    /*|************************************************************
+                                Set Up
+    ***************************************************************/
+    private void setUp( Frame init ) {
+        id = init.data[0];
+        workers = init.data[1];
+        int width = init.data[2];
+        int height = init.data[3];
+        char[][] tiles = new char[height][width];
+        for( int r = 0; r < height; r++ ) {
+            for( int c = 0; c < width; c++ ) {
+                tiles[r][c] = (char) init.data[4 + r * width + c];
+            }
+        }
+
+        board = new Board(width, height, tiles, tiles);
+        expander = new PushExpander(board);
+        closed = new CompactClosedSet(board);
+        recordLength = board.boxes.length + 4;
+        batches = new int[workers][batchStates * recordLength];
+        batchFill = new int[workers];
+
+        // - The owner of the start state files it as its first state
+        int[] start = board.boxes.clone();
+        int player = expander.normalize(board.player, start);
+        if( DistributedSearch.owner(player, start, workers) == id ) {
+            closed.add(player, start);
+            addState(-1, -1, -1);
+            frontier = new int[board.boxes.length + 2];
+            frontier[0] = 0;
+            frontier[1] = player;
+            System.arraycopy(start, 0, frontier, 2, start.length);
+            frontierCount = 1;
+        }
+    }
+
+    /**
+        ` Builds the mesh: connects to every worker with a higher id, then accepts one connection
+        from each worker with a lower id. Connecting first cannot deadlock, since the listening
+        sockets queue the connections until they are accepted.
+    */
+    private void connectPeers( Frame init, ServerSocket listener ) throws IOException {
+        peerOut = new DataOutputStream[workers];
+        int base = 4 + board.size;
+        for( int peer = id + 1; peer < workers; peer++ ) {
+            int address = init.data[base + 2 * peer];
+            InetAddress host = InetAddress.getByAddress(new byte[] {
+                (byte) (address >>> 24), (byte) (address >>> 16), (byte) (address >>> 8), (byte) address });
+            Socket socket = new Socket(host, init.data[base + 2 * peer + 1]);
+            attach(socket, peer);
+            Frame.write(peerOut[peer], DistributedSearch.PEER, id);
+        }
+        for( int i = 0; i < id; i++ ) {
+            Socket socket = listener.accept();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            Frame hello = Frame.read(in);
+            attach(socket, hello.data[0], in);
+        }
+    }
+
+    private void attach( Socket socket, int peer ) throws IOException {
+        attach(socket, peer, new DataInputStream(new BufferedInputStream(socket.getInputStream())));
+    }
+
+    private void attach( Socket socket, int peer, DataInputStream in ) throws IOException {
+        socket.setTcpNoDelay(true);
+        peerOut[peer] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+
+        Thread reader = new Thread(() -> {
+            try {
+                while( true ) {
+                    inbox.put(Frame.read(in));
+                }
+            } catch( IOException | InterruptedException ex ) {
+                // - The peer closed the connection at the end of the search
+            }
+        }, "peer-" + peer);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /*|************************************************************
+                                Layers
+    ***************************************************************/
+    /**
+        ` Expands the current layer, ships successors to their owners, and files the states this
+        worker owns once every peer has closed the layer.
+    */
+    private void expandLayer() throws IOException, InterruptedException {
+        int boxCount = board.boxes.length;
+        int[] boxes = new int[boxCount];
+        int[] after = new int[boxCount];
+        int[] pushes = new int[4 * Math.max(1, boxCount)];
+        int[] record = new int[recordLength];
+        int stride = boxCount + 2;
+
+        nextCount = 0;
+        for( int f = 0; f < frontierCount; f++ ) {
+            int index = frontier[f * stride];
+            System.arraycopy(frontier, f * stride + 2, boxes, 0, boxCount);
+            int count = expander.generate(frontier[f * stride + 1], boxes, pushes);
+
+            for( int i = 0; i < count; i++ ) {
+                int player = expander.apply(boxes, pushes[i], after);
+                if( expander.heuristic(after) == Integer.MAX_VALUE ) {
+                    continue;
+                }
+                record[0] = expander.normalize(player, after);
+                System.arraycopy(after, 0, record, 1, boxCount);
+                record[boxCount + 1] = id;
+                record[boxCount + 2] = index;
+                record[boxCount + 3] = pushes[i];
+
+                int owner = DistributedSearch.owner(record[0], after, workers);
+                if( owner == id ) {
+                    file(record, 0);
+                } else {
+                    System.arraycopy(record, 0, batches[owner], batchFill[owner] * recordLength, recordLength);
+                    if( ++batchFill[owner] == batchStates ) {
+                        sendBatch(owner);
+                    }
+                }
+            }
+        }
+
+        for( int peer = 0; peer < workers; peer++ ) {
+            if( peer != id ) {
+                sendBatch(peer);
+                Frame.write(peerOut[peer], DistributedSearch.LAYER_END);
+            }
+        }
+
+        // - TCP keeps each connection in order, so a peer's end mark comes after all its states
+        int ended = 0;
+        while( ended < workers - 1 ) {
+            Frame frame = inbox.take();
+            if( frame.type == DistributedSearch.LAYER_END ) {
+                ended++;
+            } else {
+                for( int offset = 0; offset < frame.length; offset += recordLength ) {
+                    file(frame.data, offset);
+                }
+            }
+        }
+
+        int expanded = frontierCount;
+        frontier = Arrays.copyOf(next, nextCount * stride);
+        frontierCount = nextCount;
+        Frame.write(coordinatorOut, DistributedSearch.LAYER_DONE, nextCount, expanded, solvedIndex);
+    }
+
+    private void sendBatch( int peer ) throws IOException {
+        if( batchFill[peer] > 0 ) {
+            Frame.write(peerOut[peer], DistributedSearch.STATES, batches[peer], batchFill[peer] * recordLength);
+            peerOut[peer].flush();
+            batchFill[peer] = 0;
+        }
+    }
+
+    /**
+        ` Files one received record if its state is new: gives it an index, keeps its parent link
+        and puts it on the next layer.
+    */
+    private void file( int[] records, int offset ) {
+        int boxCount = board.boxes.length;
+        int[] boxes = Arrays.copyOfRange(records, offset + 1, offset + 1 + boxCount);
+        int player = records[offset];
+        if( !closed.add(player, boxes) ) {
+            return;
+        }
+
+        int index = addState(records[offset + boxCount + 1], records[offset + boxCount + 2], records[offset + boxCount + 3]);
+        if( solvedIndex < 0 && board.isSolved(boxes) ) {
+            solvedIndex = index;
+        }
+
+        int stride = boxCount + 2;
+        if( (nextCount + 1) * stride > next.length ) {
+            next = Arrays.copyOf(next, next.length * 2 + stride);
+        }
+        next[nextCount * stride] = index;
+        next[nextCount * stride + 1] = player;
+        System.arraycopy(boxes, 0, next, nextCount * stride + 2, boxCount);
+        nextCount++;
+    }
+
+    private int addState( int owner, int index, int push ) {
+        if( stateCount == pushOf.length ) {
+            parentOwner = Arrays.copyOf(parentOwner, stateCount * 2);
+            parentIndex = Arrays.copyOf(parentIndex, stateCount * 2);
+            pushOf = Arrays.copyOf(pushOf, stateCount * 2);
+        }
+        parentOwner[stateCount] = owner;
+        parentIndex[stateCount] = index;
+        pushOf[stateCount] = push;
+        return stateCount++;
+    }
+}
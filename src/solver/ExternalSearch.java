@@ -0,0 +1,552 @@
+package solver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+    ` Push-level search whose state history lives on disk instead of in the heap.
+
+    Breadth-first mode writes every layer as a sorted, duplicate-free file. The next layer is
+    generated into an in-memory buffer that is sorted and spilled as a run whenever it fills,
+    and the runs are merged while being checked against every earlier layer, all with
+    sequential reads and writes.
+
+    A* mode keeps one unsorted bucket file per f-value. The lowest bucket is sorted into runs,
+    merged, checked against the closed file, expanded into the buckets again, and finally merged
+    into the closed file.
+
+    Only the sort buffer ( SolverConfig.bufferBytes ) and one fixed I/O buffer per open file
+    live on the heap. No parent links are kept: the path is recovered afterwards by scanning the
+    files backwards for a state that leads to the current one.
+*/
+public class ExternalSearch {
+
+    /*|************************************************************
+                              Attributes
+    ***************************************************************/
+    private static final int IO_BUFFER_BYTES = 1 << 16;
+
+    private Board board;
+    private SolveStats stats;
+    private PushExpander expander;
+    private boolean aStar;
+    private Path directory;
+    private boolean ownsDirectory;
+
+    private int boxCount;
+    private int stateLongs;
+    private long[] buffer;      // sort buffer, sized from the config
+    private int fileCounter = 0;
+    private boolean goalFound = false;
+
+    // - Scratch arrays for expanding one state
+    private int[] boxes;
+    private int[] nextBoxes;
+    private int[] pushes;
+
+    // - Statistics
+    protected long statesStored = 0;
+    protected long bytesWritten = 0;
+    protected long bytesRead = 0;
+    protected int runsWritten = 0;
+    protected int depth = 0;
+
+    /*|************************************************************
+                          Constructor Methods
+    ***************************************************************/
+    public ExternalSearch( Board board, SolverConfig config, SolveStats stats ) {
+        this.board = board;
+        this.stats = stats;
+        this.expander = new PushExpander(board);
+        this.aStar = SolverConfig.MODE_EXTERNAL_ASTAR.equals(config.mode);
+        this.directory = config.workDirectory == null ? null : Paths.get(config.workDirectory);
+
+        this.boxCount = board.boxes.length;
+        this.stateLongs = StateRecord.longs(boxCount);
+        this.boxes = new int[boxCount];
+        this.nextBoxes = new int[boxCount];
+        this.pushes = new int[4 * Math.max(1, boxCount)];
+
+        int recordLongs = stateLongs + 1;
+        long longs = Math.max(recordLongs * 1024L, Math.min(config.bufferBytes / 8, Integer.MAX_VALUE - 8));
+        this.buffer = new long[(int) (longs / recordLongs * recordLongs)];
+    }
+
+    /*|************************************************************
+                              Main Method
+    ***************************************************************/
+    /**
+        ` Runs the search and returns the solution, or null when there is none or the files
+        could not be written.
+    */
+    public String solve() {
+        try {
+            if( directory == null ) {
+                directory = Files.createTempDirectory("sokobot-");
+                ownsDirectory = true;
+            } else {
+                Files.createDirectories(directory);
+            }
+
+            int[] solution = aStar ? searchAStar() : searchBreadthFirst();
+            return solution == null ? null : new SolutionOptimizer(board).buildSolution(solution);
+
+        } catch( IOException ex ) {
+            ex.printStackTrace(System.err);
+            return null;
+        } finally {
+            cleanUp();
+        }
+    }
+
+    public String summary() {
+        return String.format("depth %d, %d states on disk, %d runs, %.1f MB written, %.1f MB read",
+            depth, statesStored, runsWritten, bytesWritten / 1048576.0, bytesRead / 1048576.0);
+    }
+
+    /*|************************************************************
+                         Breadth-First Search
+    ***************************************************************/
+    private int[] searchBreadthFirst() throws IOException {
+        List<Path> layers = new ArrayList<>();
+        long[] start = new long[stateLongs];
+        StateRecord.pack(expander.normalize(board.player, board.boxes), board.boxes, start, 0);
+
+        Path first = newFile("layer");
+        try( RecordWriter writer = new RecordWriter(first) ) {
+            writer.write(start, 0, stateLongs);
+        }
+        layers.add(first);
+        statesStored = 1;
+
+        if( board.isSolved(board.boxes) ) {
+            return new int[0];
+        }
+
+        long[] goal = new long[stateLongs];
+        while( true ) {
+            // - Expand the newest layer into sorted runs
+            List<Path> runs = new ArrayList<>();
+            int count = 0;
+
+            try( RecordReader reader = new RecordReader(layers.get(layers.size() - 1), stateLongs) ) {
+                long[] record = new long[stateLongs];
+                while( reader.next(record) ) {
+                    int player = StateRecord.unpack(record, 0, boxes);
+                    int found = expander.generate(player, boxes, pushes);
+
+                    for( int i = 0; i < found; i++ ) {
+                        if( count + stateLongs > buffer.length ) {
+                            runs.add(spillRun(count / stateLongs, 0));
+                            count = 0;
+                        }
+                        int next = expander.apply(boxes, pushes[i], nextBoxes);
+                        StateRecord.pack(expander.normalize(next, nextBoxes), nextBoxes, buffer, count);
+                        count += stateLongs;
+                    }
+                }
+            }
+            if( count > 0 ) {
+                runs.add(spillRun(count / stateLongs, 0));
+            }
+
+            // - Merge the runs into the next layer, dropping states seen in any earlier layer
+            Path layer = newFile("layer");
+            long written = merge(runs, layers, layer, 0, goal);
+            deleteAll(runs);
+
+            if( written == 0 ) {
+                return null;
+            }
+            layers.add(layer);
+            statesStored += written;
+            depth = layers.size() - 1;
+
+            if( goalFound ) {
+                return tracePushes(layers, goal, 0, -1);
+            }
+            stats.expanded = statesStored;
+            if( stats.overLimit() ) {
+                return null;
+            }
+        }
+    }
+
+    /*|************************************************************
+                              A* Search
+    ***************************************************************/
+    /**
+        ` Records are ( g, state ). Buckets are appended unsorted; when a bucket is taken it is
+        sorted in buffer-sized runs, merged against the closed file and expanded.
+    */
+    private int[] searchAStar() throws IOException {
+        int recordLongs = stateLongs + 1;
+        TreeMap<Integer, RecordWriter> buckets = new TreeMap<>();
+        Path closed = null;
+
+        int h = expander.heuristic(board.boxes);
+        if( h == Integer.MAX_VALUE ) {
+            return null;
+        }
+
+        long[] record = new long[recordLongs];
+        StateRecord.pack(expander.normalize(board.player, board.boxes), board.boxes, record, 1);
+        bucket(buckets, h).write(record, 0, recordLongs);
+
+        long[] goal = new long[recordLongs];
+        while( !buckets.isEmpty() ) {
+            int f = buckets.firstKey();
+            RecordWriter bucket = buckets.remove(f);
+            bucket.close();
+
+            // - Sort the bucket into unique runs, then merge them against the closed file
+            List<Path> runs = new ArrayList<>();
+            try( RecordReader reader = new RecordReader(bucket.path, recordLongs) ) {
+                int count = 0;
+                while( reader.next(record) ) {
+                    if( count + recordLongs > buffer.length ) {
+                        runs.add(spillRun(count / recordLongs, 1));
+                        count = 0;
+                    }
+                    System.arraycopy(record, 0, buffer, count, recordLongs);
+                    count += recordLongs;
+                }
+                if( count > 0 ) {
+                    runs.add(spillRun(count / recordLongs, 1));
+                }
+            }
+            Files.deleteIfExists(bucket.path);
+
+            Path expand = newFile("expand");
+            long written = merge(runs, closed == null ? List.of() : List.of(closed), expand, 1, goal);
+            deleteAll(runs);
+
+            // - Fold the expanded states into the closed file
+            Path nextClosed = newFile("closed");
+            merge(closed == null ? List.of(expand) : List.of(closed, expand), List.of(), nextClosed, 1, null);
+            if( closed != null ) {
+                Files.deleteIfExists(closed);
+            }
+            closed = nextClosed;
+            statesStored += written;
+
+            if( goalFound ) {
+                depth = (int) goal[0];
+                Files.deleteIfExists(expand);
+                closeAll(buckets.values());
+                return tracePushes(List.of(closed), goal, 1, goal[0]);
+            }
+
+            // - Expand into the buckets; successors never go below the current f
+            try( RecordReader reader = new RecordReader(expand, recordLongs) ) {
+                long[] next = new long[recordLongs];
+                while( reader.next(record) ) {
+                    int player = StateRecord.unpack(record, 1, boxes);
+                    int found = expander.generate(player, boxes, pushes);
+
+                    for( int i = 0; i < found; i++ ) {
+                        int nextPlayer = expander.apply(boxes, pushes[i], nextBoxes);
+                        int nextH = expander.heuristic(nextBoxes);
+                        if( nextH == Integer.MAX_VALUE ) {
+                            continue;
+                        }
+                        next[0] = record[0] + 1;
+                        StateRecord.pack(expander.normalize(nextPlayer, nextBoxes), nextBoxes, next, 1);
+                        bucket(buckets, Math.max(f, (int) next[0] + nextH)).write(next, 0, recordLongs);
+                    }
+                }
+            }
+            Files.deleteIfExists(expand);
+            stats.expanded = statesStored;
+            if( stats.overLimit() ) {
+                closeAll(buckets.values());
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private RecordWriter bucket( TreeMap<Integer, RecordWriter> buckets, int f ) throws IOException {
+        RecordWriter writer = buckets.get(f);
+        if( writer == null ) {
+            writer = new RecordWriter(newFile("bucket-" + f));
+            buckets.put(f, writer);
+        }
+        return writer;
+    }
+
+    /*|************************************************************
+                           Sorting & Merging
+    ***************************************************************/
+    /**
+        ` Sorts the first `count` records of the buffer, removes duplicates and writes them to
+        a new run file.
+    */
+    private Path spillRun( int count, int prefix ) throws IOException {
+        int length = prefix + stateLongs;
+        int unique = StateRecord.sortUnique(buffer, count, prefix, stateLongs);
+
+        Path run = newFile("run");
+        try( RecordWriter writer = new RecordWriter(run) ) {
+            writer.write(buffer, 0, unique * length);
+        }
+        runsWritten++;
+        return run;
+    }
+
+    /**
+        ` K-way merges sorted inputs into `out`, keeping one copy of each state and dropping any
+        state found in the sorted `subtract` files. When `goal` is given, the first solved state
+        written is copied into it and goalFound is set.
+
+        @return the number of records written
+    */
+    private long merge( List<Path> inputs, List<Path> subtract, Path out, int prefix, long[] goal ) throws IOException {
+        int length = prefix + stateLongs;
+        List<RecordReader> readers = new ArrayList<>();
+        List<RecordReader> filters = new ArrayList<>();
+        long written = 0;
+
+        try( RecordWriter writer = new RecordWriter(out) ) {
+            for( Path input : inputs ) {
+                readers.add(new RecordReader(input, length));
+            }
+            for( Path filter : subtract ) {
+                filters.add(new RecordReader(filter, length));
+            }
+
+            long[][] heads = new long[readers.size()][length];
+            boolean[] live = new boolean[readers.size()];
+            for( int i = 0; i < readers.size(); i++ ) {
+                live[i] = readers.get(i).next(heads[i]);
+            }
+
+            long[][] filterHeads = new long[filters.size()][length];
+            boolean[] filterLive = new boolean[filters.size()];
+            for( int i = 0; i < filters.size(); i++ ) {
+                filterLive[i] = filters.get(i).next(filterHeads[i]);
+            }
+
+            long[] last = new long[length];
+            boolean hasLast = false;
+
+            while( true ) {
+                int min = -1;
+                for( int i = 0; i < heads.length; i++ ) {
+                    if( live[i] && (min < 0 || StateRecord.compareRecords(heads[i], 0, heads[min], 0, prefix, length) < 0) ) {
+                        min = i;
+                    }
+                }
+                if( min < 0 ) {
+                    break;
+                }
+
+                long[] candidate = heads[min];
+                boolean keep = !hasLast || StateRecord.compare(candidate, prefix, last, prefix, stateLongs) != 0;
+
+                // - Advance every filter up to the candidate's state
+                for( int i = 0; keep && i < filters.size(); i++ ) {
+                    while( filterLive[i] && StateRecord.compare(filterHeads[i], prefix, candidate, prefix, stateLongs) < 0 ) {
+                        filterLive[i] = filters.get(i).next(filterHeads[i]);
+                    }
+                    if( filterLive[i] && StateRecord.compare(filterHeads[i], prefix, candidate, prefix, stateLongs) == 0 ) {
+                        keep = false;
+                    }
+                }
+
+                if( keep ) {
+                    writer.write(candidate, 0, length);
+                    written++;
+
+                    if( goal != null && !goalFound ) {
+                        StateRecord.unpack(candidate, prefix, boxes);
+                        if( board.isSolved(boxes) ) {
+                            System.arraycopy(candidate, 0, goal, 0, length);
+                            goalFound = true;
+                        }
+                    }
+                }
+                System.arraycopy(candidate, 0, last, 0, length);
+                hasLast = true;
+                live[min] = readers.get(min).next(heads[min]);
+            }
+        } finally {
+            closeAll(readers);
+            closeAll(filters);
+        }
+        return written;
+    }
+
+    /*|************************************************************
+                          Path Reconstruction
+    ***************************************************************/
+    /**
+        ` Walks back from the goal: each step scans the files for a state ( at g - 1 in A* mode )
+        with a push leading to the current state, and then continues from that state.
+
+        @param files     the layer files in BFS mode, or the closed file in A* mode
+        @param goalG     the goal's g in A* mode, -1 in BFS mode
+    */
+    private int[] tracePushes( List<Path> files, long[] goal, int prefix, long goalG ) throws IOException {
+        int length = prefix + stateLongs;
+        int steps = goalG >= 0 ? (int) goalG : files.size() - 1;
+        int[] solution = new int[steps];
+
+        long[] target = Arrays.copyOf(goal, length);
+        long[] record = new long[length];
+        long[] successor = new long[stateLongs];
+
+        for( int step = steps - 1; step >= 0; step-- ) {
+            Path file = goalG >= 0 ? files.get(0) : files.get(step);
+            boolean found = false;
+
+            try( RecordReader reader = new RecordReader(file, length) ) {
+                while( !found && reader.next(record) ) {
+                    if( prefix > 0 && record[0] != step ) {
+                        continue;
+                    }
+
+                    int player = StateRecord.unpack(record, prefix, boxes);
+                    int count = expander.generate(player, boxes, pushes);
+                    for( int i = 0; i < count && !found; i++ ) {
+                        int next = expander.apply(boxes, pushes[i], nextBoxes);
+                        StateRecord.pack(expander.normalize(next, nextBoxes), nextBoxes, successor, 0);
+
+                        if( StateRecord.compare(successor, 0, target, prefix, stateLongs) == 0 ) {
+                            solution[step] = pushes[i];
+                            System.arraycopy(record, 0, target, 0, length);
+                            found = true;
+                        }
+                    }
+                }
+            }
+
+            if( !found ) {
+                throw new IOException("no predecessor found at depth " + step);
+            }
+        }
+        return solution;
+    }
+
+    /*|************************************************************
+                             File Helpers
+    ***************************************************************/
+    private Path newFile( String kind ) {
+        return directory.resolve(kind + "-" + (fileCounter++) + ".bin");
+    }
+
+    private void deleteAll( List<Path> files ) throws IOException {
+        for( Path file : files ) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private void closeAll( Iterable<? extends AutoCloseable> closeables ) throws IOException {
+        for( AutoCloseable closeable : closeables ) {
+            try {
+                closeable.close();
+            } catch( IOException ex ) {
+                throw ex;
+            } catch( Exception ex ) {
+                throw new IOException(ex);
+            }
+        }
+    }
+
+    private void cleanUp() {
+        if( directory == null ) {
+            return;
+        }
+        try( DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.bin") ) {
+            for( Path file : files ) {
+                Files.deleteIfExists(file);
+            }
+            if( ownsDirectory ) {
+                Files.deleteIfExists(directory);
+            }
+        } catch( IOException ex ) {
+            ex.printStackTrace(System.err);
+        }
+    }
+
+    /**
+        ` Appends longs to a file through a fixed direct buffer.
+    */
+    private class RecordWriter implements AutoCloseable {
+        private Path path;
+        private FileChannel channel;
+        private ByteBuffer bytes = ByteBuffer.allocateDirect(IO_BUFFER_BYTES);
+
+        RecordWriter( Path path ) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void write( long[] src, int offset, int count ) throws IOException {
+            for( int i = 0; i < count; i++ ) {
+                if( bytes.remaining() < Long.BYTES ) {
+                    flush();
+                }
+                bytes.putLong(src[offset + i]);
+            }
+        }
+
+        private void flush() throws IOException {
+            bytes.flip();
+            while( bytes.hasRemaining() ) {
+                bytesWritten += channel.write(bytes);
+            }
+            bytes.clear();
+        }
+
+        @Override public void close() throws IOException {
+            if( channel.isOpen() ) {
+                flush();
+                channel.close();
+            }
+        }
+    }
+
+    /**
+        ` Reads fixed-length records from a file through a fixed direct buffer.
+    */
+    private class RecordReader implements AutoCloseable {
+        private FileChannel channel;
+        private ByteBuffer bytes = ByteBuffer.allocateDirect(IO_BUFFER_BYTES);
+        private int length;
+
+        RecordReader( Path path, int length ) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.length = length;
+            bytes.flip();
+        }
+
+        boolean next( long[] dest ) throws IOException {
+            for( int i = 0; i < length; i++ ) {
+                if( bytes.remaining() < Long.BYTES && !refill() ) {
+                    return false;
+                }
+                dest[i] = bytes.getLong();
+            }
+            return true;
+        }
+
+        private boolean refill() throws IOException {
+            bytes.compact();
+            int read = channel.read(bytes);
+            bytes.flip();
+            if( read > 0 ) {
+                bytesRead += read;
+            }
+            return bytes.remaining() >= Long.BYTES;
+        }
+
+        @Override public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package solver;
+
+import java.util.Random;
+
+/**
+    ` Fixed-size memo of heuristic values keyed by box configuration, for lower bounds that do not
+    depend on where the player stands. States that only differ in the player's position then
+    share one computation.
+
+    The table is lossy: slots are grouped in sets of WAYS, a configuration can only live in the
+    set its key picks, and a full set evicts with the CLOCK rule ( a slot read since it was
+    stored gets a second chance ). Keys are 64-bit Zobrist hashes of the box cells, and slots are
+    plain arrays, so nothing is allocated after construction.
+*/
+public class HeuristicCache {
+
+    public static final int MISSING = Integer.MIN_VALUE;    // returned by get on a miss
+
+    private static final int WAYS = 4;
+
+    /*|************************************************************
+                              Attributes
+    ***************************************************************/
+    private final long[] zobrist;       // random key per cell
+    private final long[] keys;          // 0 marks an empty slot
+    private final int[] values;
+    private final boolean[] referenced;
+    private final byte[] hand;          // CLOCK hand per set
+    private final int setMask;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /*|************************************************************
+                          Constructor Methods
+    ***************************************************************/
+    /**
+        @param slots    table size, rounded up to a power of two
+    */
+    public HeuristicCache( Board board, int slots ) {
+        int capacity = Integer.highestOneBit((Math.max(WAYS, slots) - 1) << 1);
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.referenced = new boolean[capacity];
+        this.hand = new byte[capacity / WAYS];
+        this.setMask = capacity / WAYS - 1;
+
+        Random random = new Random(board.size);
+        this.zobrist = new long[board.size];
+        for( int i = 0; i < board.size; i++ ) {
+            zobrist[i] = random.nextLong();
+        }
+    }
+
+    /*|************************************************************
+                                 Keys
+    ***************************************************************/
+    /**
+        ` Key of one box cell; the key of a configuration is the XOR over its boxes.
+    */
+    public long cellKey( int cell ) {
+        return zobrist[cell];
+    }
+
+    public long key( int[] boxes ) {
+        long key = 0;
+        for( int cell : boxes ) {
+            key ^= zobrist[cell];
+        }
+        return key;
+    }
+
+    /*|************************************************************
+                                Lookup
+    ***************************************************************/
+    /**
+        ` Returns the stored value for a configuration, or MISSING.
+    */
+    public int get( long key ) {
+        key = key == 0 ? 1 : key;
+        int base = ((int) key & setMask) * WAYS;
+        for( int way = 0; way < WAYS; way++ ) {
+            if( keys[base + way] == key ) {
+                referenced[base + way] = true;
+                hits++;
+                return values[base + way];
+            }
+        }
+        misses++;
+        return MISSING;
+    }
+
+    /**
+        ` Stores a value, taking an empty slot of the set if there is one and evicting otherwise.
+    */
+    public void put( long key, int value ) {
+        key = key == 0 ? 1 : key;
+        int set = (int) key & setMask;
+        int base = set * WAYS;
+        for( int way = 0; way < WAYS; way++ ) {
+            if( keys[base + way] == 0 || keys[base + way] == key ) {
+                store(base + way, key, value);
+                return;
+            }
+        }
+
+        // - CLOCK: clear reference bits until the hand finds a slot that was not read again
+        int way = hand[set];
+        while( referenced[base + way] ) {
+            referenced[base + way] = false;
+            way = (way + 1) % WAYS;
+        }
+        store(base + way, key, value);
+        hand[set] = (byte) ((way + 1) % WAYS);
+        evictions++;
+    }
+
+    private void store( int slot, long key, int value ) {
+        keys[slot] = key;
+        values[slot] = value;
+        referenced[slot] = false;
+    }
+
+    /*|************************************************************
+                               Counters
+    ***************************************************************/
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    public long evictions() {
+        return evictions;
+    }
+
+    public double hitRate() {
+        return hits + misses == 0 ? 0.0 : hits / (double) (hits + misses);
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+        ` Heap bytes held by the slots.
+    */
+    public long bytesUsed() {
+        return keys.length * (8L + 4L + 1L) + hand.length + zobrist.length * 8L;
+    }
+}
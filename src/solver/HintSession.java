@@ -0,0 +1,454 @@
+package solver;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+    ` Answers "what next?" for a level being played by hand, call after call, without solving
+    it again each time. The session keeps a transposition table of push-level states that are
+    known to lead to a solution, each with the push to make next and the pushes left, and a
+    HeuristicCache shared by all its searches.
+
+    A query whose state is in the table is answered from it: only the walk to the next push is
+    worked out, so walking around between pushes costs a BFS over the board. A state off the
+    known paths gets a bounded local search that stops at the first known state or solved
+    position it reaches, and only when that fails a full push-level search from the position.
+    Every path found is put into the table, so play that strays and comes back stays fast.
+    States the searches prove hopeless are remembered too. When the full search runs into the
+    config's limits the answer is "limit": nothing is known about the position either way.
+
+    A session belongs to one level and is not safe for use from several threads.
+*/
+public class HintSession {
+
+    public static final int SOLVED = -1;    // next push of a solved state
+    public static final int DEAD = -2;      // next push of a state with no solution
+
+    /**
+        ` One answer. `move` is 'u', 'd', 'l' or 'r', or 0 when there is nothing to suggest.
+    */
+    public static class Hint {
+        public char move;
+        public int pushesLeft;          // -1 when unknown
+        public String source;           // "path", "local", "search", "solved", "dead" or "limit"
+        public long micros;
+
+        @Override public String toString() {
+            return String.format("%s, %d pushes left ( %s, %d us )", move == 0 ? "-" : String.valueOf(move),
+                pushesLeft, source, micros);
+        }
+    }
+
+    /*|************************************************************
+                              Attributes
+    ***************************************************************/
+    private Board board;
+    private SolverConfig config;
+    private PushExpander expander;
+    private HeuristicCache heuristics;
+    private long[] playerKeys;          // Zobrist key per canonical player cell
+
+    // - Transposition table: open addressing over 64-bit state keys, 0 marks an empty slot
+    private long[] keys = new long[1024];
+    private int[] nextPush = new int[1024];
+    private int[] pushesLeft = new int[1024];
+    private int entries = 0;
+
+    // - Counters
+    public long tableAnswers = 0;
+    public long localSearches = 0;
+    public long fullSearches = 0;
+
+    /*|************************************************************
+                          Constructor Methods
+    ***************************************************************/
+    public HintSession( Board board, SolverConfig config ) {
+        this.board = board;
+        this.config = config;
+        this.expander = new PushExpander(board);
+        this.heuristics = new HeuristicCache(board, Math.max(1, config.heuristicCacheSlots));
+        Random random = new Random(~board.size);
+        this.playerKeys = new long[board.size];
+        for( int i = 0; i < board.size; i++ ) {
+            playerKeys[i] = random.nextLong();
+        }
+    }
+
+    public HintSession( int width, int height, char[][] mapData, char[][] itemsData, SolverConfig config ) {
+        this(new Board(width, height, mapData, itemsData), config);
+    }
+
+    /*|************************************************************
+                              Main Method
+    ***************************************************************/
+    /**
+        ` The move to make from a position given as an items layer ( '@' and '$' ).
+    */
+    public Hint hint( char[][] itemsData ) {
+        int player = -1;
+        int count = 0;
+        int[] boxes = new int[board.boxes.length];
+        for( int row = 0; row < board.height; row++ ) {
+            for( int col = 0; col < board.width; col++ ) {
+                char item = itemsData[row][col];
+                if( item == '@' || item == '+' ) {
+                    player = board.index(row, col);
+                } else if( (item == '$' || item == '*') && count < boxes.length ) {
+                    boxes[count++] = board.index(row, col);
+                }
+            }
+        }
+        if( player < 0 || count != boxes.length ) {
+            return answer(0, -1, "dead", System.nanoTime());
+        }
+        Arrays.sort(boxes);
+        return hint(player, boxes);
+    }
+
+    /**
+        ` The move to make with the player on a cell and boxes on sorted cells.
+    */
+    public Hint hint( int player, int[] boxes ) {
+        long begin = System.nanoTime();
+        int canonical = expander.normalize(player, boxes);
+        long key = key(canonical, boxes);
+        String source = "path";
+        boolean finished = true;
+
+        int slot = find(key);
+        if( slot >= 0 ) {
+            tableAnswers++;
+        } else {
+            localSearches++;
+            source = "local";
+            if( !localSearch(player, boxes) && find(key) < 0 ) {
+                fullSearches++;
+                source = "search";
+                finished = fullSearch(player, boxes, key);
+            }
+            slot = find(key);
+        }
+
+        if( slot < 0 && !finished ) {
+            return answer(0, -1, "limit", begin);
+        }
+
+        if( slot < 0 || nextPush[slot] == DEAD ) {
+            return answer(0, -1, "dead", begin);
+        }
+        if( nextPush[slot] == SOLVED ) {
+            return answer(0, 0, "solved", begin);
+        }
+        int push = nextPush[slot];
+        int pushFrom = (push >> 2) - board.offset[push & 3];
+        int step = player == pushFrom ? push & 3 : firstStep(player, pushFrom, boxes);
+        return answer(step < 0 ? 0 : Board.MOVES[step], pushesLeft[slot], source, begin);
+    }
+
+    private Hint answer( int move, int left, String source, long begin ) {
+        Hint hint = new Hint();
+        hint.move = (char) move;
+        hint.pushesLeft = left;
+        hint.source = source;
+        hint.micros = (System.nanoTime() - begin) / 1000;
+        return hint;
+    }
+
+    private boolean known( int slot ) {
+        return slot >= 0 && nextPush[slot] != DEAD;
+    }
+
+    /*|************************************************************
+                               Searches
+    ***************************************************************/
+    /**
+        ` Greedy best-first search from a position, at most config.hintExpansions expansions,
+        that stops at a solved position or a state already in the table and files the way
+        there. A search that runs out of states without either marks its start dead.
+    */
+    private boolean localSearch( int player, int[] start ) {
+        int h = heuristic(start);
+        int startPlayer = expander.normalize(player, start);
+        if( h == Integer.MAX_VALUE ) {
+            store(key(startPlayer, start), DEAD, -1);
+            return false;
+        }
+        if( board.isSolved(start) ) {
+            store(key(startPlayer, start), SOLVED, 0);
+            return true;
+        }
+
+        CompactClosedSet closed = new CompactClosedSet(board);
+        closed.add(startPlayer, start);
+        int capacity = 64;
+        int[] parent = new int[capacity];
+        int[] pushOf = new int[capacity];
+        int[] playerOf = new int[capacity];
+        int[][] boxesOf = new int[capacity][];
+        long[] heap = new long[capacity];       // ( h << 32 ) | node
+        parent[0] = -1;
+        pushOf[0] = -1;
+        playerOf[0] = player;
+        boxesOf[0] = start;
+        int nodes = 1;
+        heap[0] = (long) h << 32;
+        int heapSize = 1;
+
+        int[] pushes = new int[4 * Math.max(1, start.length)];
+        boolean exhausted = true;
+        for( long expanded = 0; heapSize > 0; expanded++ ) {
+            if( expanded >= config.hintExpansions ) {
+                exhausted = false;
+                break;
+            }
+            int node = (int) heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize, 0);
+
+            int count = expander.generate(playerOf[node], boxesOf[node], pushes);
+            for( int i = 0; i < count; i++ ) {
+                int[] next = new int[start.length];
+                int nextPlayer = expander.apply(boxesOf[node], pushes[i], next);
+                int nextH = heuristic(next);
+                if( nextH == Integer.MAX_VALUE ) {
+                    continue;
+                }
+                int canonical = expander.normalize(nextPlayer, next);
+                if( !closed.add(canonical, next) ) {
+                    continue;
+                }
+
+                if( nodes == capacity ) {
+                    capacity *= 2;
+                    parent = Arrays.copyOf(parent, capacity);
+                    pushOf = Arrays.copyOf(pushOf, capacity);
+                    playerOf = Arrays.copyOf(playerOf, capacity);
+                    boxesOf = Arrays.copyOf(boxesOf, capacity);
+                }
+                parent[nodes] = node;
+                pushOf[nodes] = pushes[i];
+                playerOf[nodes] = nextPlayer;
+                boxesOf[nodes] = next;
+
+                int slot = find(key(canonical, next));
+                if( board.isSolved(next) || known(slot) ) {
+                    int left = board.isSolved(next) ? 0 : pushesLeft[slot];
+                    fileBack(nodes, parent, pushOf, playerOf, boxesOf, left);
+                    return true;
+                }
+                if( heapSize == heap.length ) {
+                    heap = Arrays.copyOf(heap, heapSize * 2);
+                }
+                heap[heapSize] = (long) nextH << 32 | nodes;
+                siftUp(heap, heapSize++);
+                nodes++;
+            }
+        }
+
+        if( exhausted ) {
+            store(key(startPlayer, start), DEAD, -1);
+        }
+        return false;
+    }
+
+    /**
+        ` Files every state on the way from the local search's root to `node`, which is one push
+        short of a state with `left` pushes to go.
+    */
+    private void fileBack( int node, int[] parent, int[] pushOf, int[] playerOf, int[][] boxesOf, int left ) {
+        int[] endBoxes = boxesOf[node];
+        int endPlayer = expander.normalize(playerOf[node], endBoxes);
+        if( board.isSolved(endBoxes) ) {
+            store(key(endPlayer, endBoxes), SOLVED, 0);
+        }
+        for( int child = node, n = parent[node]; n >= 0; child = n, n = parent[n] ) {
+            left++;
+            store(key(expander.normalize(playerOf[n], boxesOf[n]), boxesOf[n]), pushOf[child], left);
+        }
+    }
+
+    /**
+        ` Push-level A* over the whole level from a position, within the config's limits. The
+        path it finds goes into the table; no path marks the position dead unless a limit
+        stopped the search.
+
+        @return false if a limit stopped the search
+    */
+    private boolean fullSearch( int player, int[] boxes, long key ) {
+        char[][] tiles = new char[board.height][board.width];
+        for( int cell = 0; cell < board.size; cell++ ) {
+            tiles[board.row(cell)][board.col(cell)] = !board.floor[cell] ? '#' : board.goal[cell] ? '.' : ' ';
+        }
+        for( int box : boxes ) {
+            tiles[board.row(box)][board.col(box)] = board.goal[box] ? '*' : '$';
+        }
+        tiles[board.row(player)][board.col(player)] = board.goal[player] ? '+' : '@';
+
+        SolverConfig searchConfig = config.copy();
+        searchConfig.mode = SolverConfig.MODE_PUSH_ASTAR;
+        searchConfig.progress = null;
+        SolveStats stats = new SolveStats();
+        stats.startClock(searchConfig);
+        int[] pushes = new PushSearch(new Board(board.width, board.height, tiles, tiles), searchConfig, stats).search();
+        if( pushes == null ) {
+            if( stats.limitReached ) {
+                return false;
+            }
+            store(key, DEAD, -1);
+            return true;
+        }
+        filePath(player, boxes, pushes);
+        return true;
+    }
+
+    /**
+        ` Replays pushes from a position and files every state on the way.
+    */
+    public void filePath( int player, int[] boxes, int[] pushes ) {
+        int[] current = boxes.clone();
+        int[] next = new int[boxes.length];
+        for( int i = 0; i < pushes.length; i++ ) {
+            store(key(expander.normalize(player, current), current), pushes[i], pushes.length - i);
+            player = expander.apply(current, pushes[i], next);
+            int[] swap = current;
+            current = next;
+            next = swap;
+        }
+        store(key(expander.normalize(player, current), current), SOLVED, 0);
+    }
+
+    private int heuristic( int[] boxes ) {
+        long key = heuristics.key(boxes);
+        int h = heuristics.get(key);
+        if( h == HeuristicCache.MISSING ) {
+            h = expander.heuristic(boxes);
+            heuristics.put(key, h);
+        }
+        return h;
+    }
+
+    /**
+        ` First step of a shortest walk around the boxes, or -1 when `to` cannot be reached.
+    */
+    private int firstStep( int from, int to, int[] boxes ) {
+        boolean[] blocked = new boolean[board.size];
+        for( int box : boxes ) {
+            blocked[box] = true;
+        }
+        int[] cameFrom = new int[board.size];
+        Arrays.fill(cameFrom, -1);
+        int[] queue = new int[board.size];
+        int head = 0, tail = 0;
+        queue[tail++] = to;
+        cameFrom[to] = to;
+
+        // - From the target back, so the first step is read off where the search meets `from`
+        while( head < tail ) {
+            int cell = queue[head++];
+            for( int i = 0; i < 4; i++ ) {
+                int next = cell + board.offset[i];
+                if( !board.isFloor(next) || blocked[next] || cameFrom[next] >= 0 ) {
+                    continue;
+                }
+                cameFrom[next] = cell;
+                if( next == from ) {
+                    return Board.opposite(i);
+                }
+                queue[tail++] = next;
+            }
+        }
+        return -1;
+    }
+
+    private static void siftUp( long[] heap, int i ) {
+        while( i > 0 && heap[(i - 1) / 2] > heap[i] ) {
+            long swap = heap[i];
+            heap[i] = heap[(i - 1) / 2];
+            heap[(i - 1) / 2] = swap;
+            i = (i - 1) / 2;
+        }
+    }
+
+    private static void siftDown( long[] heap, int size, int i ) {
+        while( true ) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            if( left < size && heap[left] < heap[smallest] ) {
+                smallest = left;
+            }
+            if( left + 1 < size && heap[left + 1] < heap[smallest] ) {
+                smallest = left + 1;
+            }
+            if( smallest == i ) {
+                return;
+            }
+            long swap = heap[i];
+            heap[i] = heap[smallest];
+            heap[smallest] = swap;
+            i = smallest;
+        }
+    }
+
+    /*|************************************************************
+                          Transposition Table
+    ***************************************************************/
+    private long key( int canonicalPlayer, int[] boxes ) {
+        long key = heuristics.key(boxes) ^ playerKeys[canonicalPlayer];
+        return key == 0 ? 1 : key;
+    }
+
+    private int find( long key ) {
+        int mask = keys.length - 1;
+        for( int slot = (int) (key ^ key >>> 32) & mask; keys[slot] != 0; slot = (slot + 1) & mask ) {
+            if( keys[slot] == key ) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+        ` Files a state; a shorter way to the goal replaces a longer one, and a way to the goal
+        replaces a dead mark left by a search that gave up early.
+    */
+    private void store( long key, int push, int left ) {
+        if( (entries + 1) * 2 > keys.length ) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int slot = (int) (key ^ key >>> 32) & mask;
+        while( keys[slot] != 0 && keys[slot] != key ) {
+            slot = (slot + 1) & mask;
+        }
+        if( keys[slot] == 0 ) {
+            keys[slot] = key;
+            entries++;
+        } else if( nextPush[slot] != DEAD && (push == DEAD || pushesLeft[slot] <= left) ) {
+            return;
+        }
+        nextPush[slot] = push;
+        pushesLeft[slot] = left;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldPush = nextPush;
+        int[] oldLeft = pushesLeft;
+        keys = new long[oldKeys.length * 2];
+        nextPush = new int[keys.length];
+        pushesLeft = new int[keys.length];
+        entries = 0;
+        for( int i = 0; i < oldKeys.length; i++ ) {
+            if( oldKeys[i] != 0 ) {
+                store(oldKeys[i], oldPush[i], oldLeft[i]);
+            }
+        }
+    }
+
+    /**
+        ` States filed so far.
+    */
+    public int size() {
+        return entries;
+    }
+}
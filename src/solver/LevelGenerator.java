@@ -0,0 +1,399 @@
+package solver;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+import reader.MapData;
+
+/**
+    ` Seeded level generator for scaling runs. It carves random rooms joined by corridors, puts
+    the goals down with a box on each, and then plays pulls backwards from that solved position.
+    Every pull is a push undone, so the start it ends on is solvable in at most as many pushes as
+    pulls were played. The same seed and sizes always give the same level.
+
+    Usage: java -cp src solver.LevelGenerator [seed] [pushesPerBox]
+    writes the scaling suite to maps/generated/, readable as FileReader().readFile("generated/...").
+*/
+public class LevelGenerator {
+
+    public static final int[] SUITE_SIZES = { 10, 20, 30, 40, 50 };
+    public static final int[] SUITE_BOXES = { 2, 3, 4, 5, 6, 8, 10, 12, 15, 20 };
+
+    private static final int MAX_ATTEMPTS = 50;
+    private static final double FLOOR_SHARE = 0.45;     // share of the inside carved into floor
+    private static final int CELLS_PER_BOX = 6;         // fewer free cells per box and levels get too tight
+    private static final double KEEP_DIRECTION = 0.6;   // chance to pull the same box on in a straight line
+
+    /*|************************************************************
+                              Attributes
+    ***************************************************************/
+    private final long seed;
+    private Random random;
+
+    // - Level being built: flat cells, row * width + col
+    private int width;
+    private int height;
+    private boolean[] floor;
+    private boolean[] goal;
+    private boolean[] box;
+    private int player;
+    private int[] offset;
+
+    // - Scratch for the player flood fill
+    private int[] queue;
+    private int[] mark;
+    private int stamp = 0;
+
+    /*|************************************************************
+                          Constructor Methods
+    ***************************************************************/
+    public LevelGenerator( long seed ) {
+        this.seed = seed;
+    }
+
+    /*|************************************************************
+                              Main Method
+    ***************************************************************/
+    public static void main( String[] args ) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        int pushesPerBox = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+        Path directory = Paths.get("maps", "generated");
+        try {
+            Files.createDirectories(directory);
+            for( Map.Entry<String, MapData> level : new LevelGenerator(seed).suite(pushesPerBox).entrySet() ) {
+                write(level.getValue(), directory.resolve(level.getKey() + ".txt"));
+                System.out.println("generated/" + level.getKey());
+            }
+        } catch( IOException e ) {
+            e.printStackTrace();
+        }
+    }
+
+    /*|************************************************************
+                            Class Methods
+    ***************************************************************/
+    /**
+        ` Builds the scaling suite: every size in SUITE_SIZES with every box count in SUITE_BOXES
+        that fits, named like "b05_20x20". Levels that could not be built are left out.
+    */
+    public Map<String, MapData> suite( int pushesPerBox ) {
+        Map<String, MapData> levels = new LinkedHashMap<>();
+        for( int size : SUITE_SIZES ) {
+            for( int boxes : SUITE_BOXES ) {
+                if( boxes * CELLS_PER_BOX > (size - 2) * (size - 2) * FLOOR_SHARE ) {
+                    continue;
+                }
+                MapData level = generate(size, size, boxes, boxes * pushesPerBox);
+                if( level != null ) {
+                    levels.put(String.format("b%02d_%dx%d", boxes, size, size), level);
+                }
+            }
+        }
+        return levels;
+    }
+
+    /**
+        ` Generates one level. The random stream depends only on the seed and the arguments, so
+        a level can be rebuilt on its own without the rest of its suite.
+
+        @param width        columns, walls included
+        @param height       rows, walls included
+        @param boxes        number of boxes and goals
+        @param pushDepth    pulls played back from the solved position
+        @return the level, or null if none was found in MAX_ATTEMPTS tries
+    */
+    public MapData generate( int width, int height, int boxes, int pushDepth ) {
+        random = new Random(seed * 1000003L + ((width * 131L + height) * 131L + boxes) * 131L + pushDepth);
+        this.width = width;
+        this.height = height;
+        this.offset = new int[] { -width, width, -1, 1 };
+        this.queue = new int[width * height];
+        this.mark = new int[width * height];
+
+        for( int attempt = 0; attempt < MAX_ATTEMPTS; attempt++ ) {
+            carve();
+            if( !placeGoals(boxes) ) {
+                continue;
+            }
+            // - Pulls only ever need to reach about the depth asked for; a level that came out
+            //   much shallower is tried again
+            if( reversePlay(pushDepth) >= Math.min(pushDepth, 2 * boxes) && !isSolved() ) {
+                return toMapData();
+            }
+        }
+        return null;
+    }
+
+    /**
+        ` Writes a level in the maps/*.txt format.
+    */
+    public static void write( MapData level, Path file ) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for( int i = 0; i < level.rows; i++ ) {
+            if( i > 0 ) {
+                text.append("\r\n");
+            }
+            text.append(new String(level.tiles[i], 0, level.columns).replaceAll("\\s+$", ""));
+        }
+        Files.write(file, text.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /*|************************************************************
+                               Carving
+    ***************************************************************/
+    /**
+        ` Carves rectangular rooms, each joined to the one before by an L-shaped corridor, until
+        FLOOR_SHARE of the inside is floor.
+    */
+    private void carve() {
+        floor = new boolean[width * height];
+        int inside = (width - 2) * (height - 2);
+        int target = (int) (inside * FLOOR_SHARE);
+        int carved = 0;
+        int lastRow = -1;
+        int lastCol = -1;
+
+        while( carved < target ) {
+            int roomHeight = 2 + random.nextInt(Math.max(1, Math.min(5, height - 3)));
+            int roomWidth = 2 + random.nextInt(Math.max(1, Math.min(5, width - 3)));
+            int top = 1 + random.nextInt(Math.max(1, height - 1 - roomHeight));
+            int left = 1 + random.nextInt(Math.max(1, width - 1 - roomWidth));
+
+            for( int r = top; r < Math.min(height - 1, top + roomHeight); r++ ) {
+                for( int c = left; c < Math.min(width - 1, left + roomWidth); c++ ) {
+                    carved += open(r, c);
+                }
+            }
+
+            int row = top + random.nextInt(roomHeight);
+            int col = left + random.nextInt(roomWidth);
+            row = Math.min(row, height - 2);
+            col = Math.min(col, width - 2);
+            if( lastRow >= 0 ) {
+                carved += corridor(lastRow, lastCol, row, col);
+            }
+            lastRow = row;
+            lastCol = col;
+        }
+    }
+
+    private int corridor( int fromRow, int fromCol, int toRow, int toCol ) {
+        int carved = 0;
+        boolean rowsFirst = random.nextBoolean();
+        int r = fromRow;
+        int c = fromCol;
+        while( r != toRow || c != toCol ) {
+            if( (rowsFirst && r != toRow) || c == toCol ) {
+                r += Integer.signum(toRow - r);
+            } else {
+                c += Integer.signum(toCol - c);
+            }
+            carved += open(r, c);
+        }
+        return carved;
+    }
+
+    private int open( int r, int c ) {
+        int cell = r * width + c;
+        if( floor[cell] ) {
+            return 0;
+        }
+        floor[cell] = true;
+        return 1;
+    }
+
+    /**
+        ` Puts the goals, each with its box, and the player on random floor cells.
+    */
+    private boolean placeGoals( int boxes ) {
+        List<Integer> cells = new ArrayList<>();
+        for( int cell = 0; cell < floor.length; cell++ ) {
+            if( floor[cell] ) {
+                cells.add(cell);
+            }
+        }
+        if( cells.size() < boxes * CELLS_PER_BOX ) {
+            return false;
+        }
+        Collections.shuffle(cells, random);
+
+        goal = new boolean[floor.length];
+        box = new boolean[floor.length];
+        for( int i = 0; i < boxes; i++ ) {
+            goal[cells.get(i)] = true;
+            box[cells.get(i)] = true;
+        }
+        player = cells.get(boxes);
+        return true;
+    }
+
+    /*|************************************************************
+                             Reverse Play
+    ***************************************************************/
+    /**
+        ` Plays up to depth pulls. A pull needs the player to reach the cell next to a box and the
+        cell behind that to be free; the box follows the player by one. Boxes pulled least so far
+        are preferred so all of them leave their goals, and a pull is not undone by the next one.
+
+        @return pulls played
+    */
+    private int reversePlay( int depth ) {
+        int[] pulled = new int[floor.length];   // pulls per box, carried along with the box
+        int lastBox = -1;
+        int lastDir = -1;
+        List<int[]> pulls = new ArrayList<>();
+
+        for( int step = 0; step < depth; step++ ) {
+            flood(player);
+            pulls.clear();
+            int fewest = Integer.MAX_VALUE;
+            for( int cell = 0; cell < floor.length; cell++ ) {
+                if( !box[cell] ) {
+                    continue;
+                }
+                for( int dir = 0; dir < 4; dir++ ) {
+                    int stand = cell + offset[dir];
+                    int behind = stand + offset[dir];
+                    if( !isFree(stand) || mark[stand] != stamp || !isFree(behind) ) {
+                        continue;
+                    }
+                    // - Pulling the box straight back to where the last pull took it from
+                    if( cell == lastBox && dir == (lastDir ^ 1) ) {
+                        continue;
+                    }
+                    pulls.add(new int[] { cell, dir });
+                    fewest = Math.min(fewest, pulled[cell]);
+                }
+            }
+            if( pulls.isEmpty() ) {
+                return step;
+            }
+
+            int[] choice = null;
+            if( lastBox >= 0 && random.nextDouble() < KEEP_DIRECTION ) {
+                for( int[] pull : pulls ) {
+                    if( pull[0] == lastBox && pull[1] == lastDir ) {
+                        choice = pull;
+                    }
+                }
+            }
+            if( choice == null ) {
+                List<int[]> least = new ArrayList<>();
+                for( int[] pull : pulls ) {
+                    if( pulled[pull[0]] == fewest ) {
+                        least.add(pull);
+                    }
+                }
+                List<int[]> from = random.nextDouble() < 0.7 ? least : pulls;
+                choice = from.get(random.nextInt(from.size()));
+            }
+
+            int cell = choice[0];
+            int dir = choice[1];
+            int target = cell + offset[dir];
+            box[cell] = false;
+            box[target] = true;
+            pulled[target] = pulled[cell] + 1;
+            pulled[cell] = 0;
+            player = target + offset[dir];
+            lastBox = target;
+            lastDir = dir;
+        }
+        return depth;
+    }
+
+    private boolean isFree( int cell ) {
+        return cell >= 0 && cell < floor.length && floor[cell] && !box[cell];
+    }
+
+    /**
+        ` Marks every cell the player can walk to with the current stamp.
+    */
+    private void flood( int start ) {
+        stamp++;
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        mark[start] = stamp;
+        while( head < tail ) {
+            int cell = queue[head++];
+            for( int dir = 0; dir < 4; dir++ ) {
+                int next = cell + offset[dir];
+                if( isFree(next) && mark[next] != stamp ) {
+                    mark[next] = stamp;
+                    queue[tail++] = next;
+                }
+            }
+        }
+    }
+
+    private boolean isSolved() {
+        for( int cell = 0; cell < floor.length; cell++ ) {
+            if( box[cell] && !goal[cell] ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*|************************************************************
+                                Output
+    ***************************************************************/
+    /**
+        ` Turns the level into tiles. Walls only stay where they touch floor, and the picture is
+        cropped to them, so the level looks like the hand-made ones.
+    */
+    private MapData toMapData() {
+        char[][] tiles = new char[height][width];
+        int top = height, bottom = -1, left = width, right = -1;
+        for( int r = 0; r < height; r++ ) {
+            for( int c = 0; c < width; c++ ) {
+                int cell = r * width + c;
+                char tile;
+                if( !floor[cell] ) {
+                    tile = touchesFloor(r, c) ? '#' : ' ';
+                } else if( box[cell] ) {
+                    tile = goal[cell] ? '*' : '$';
+                } else if( cell == player ) {
+                    tile = goal[cell] ? '+' : '@';
+                } else {
+                    tile = goal[cell] ? '.' : ' ';
+                }
+                tiles[r][c] = tile;
+                if( tile == '#' ) {
+                    top = Math.min(top, r);
+                    bottom = Math.max(bottom, r);
+                    left = Math.min(left, c);
+                    right = Math.max(right, c);
+                }
+            }
+        }
+
+        MapData level = new MapData();
+        level.rows = bottom - top + 1;
+        level.columns = right - left + 1;
+        level.tiles = new char[level.rows][];
+        for( int r = 0; r < level.rows; r++ ) {
+            level.tiles[r] = Arrays.copyOfRange(tiles[top + r], left, right + 1);
+        }
+        return level;
+    }
+
+    private boolean touchesFloor( int r, int c ) {
+        for( int dr = -1; dr <= 1; dr++ ) {
+            for( int dc = -1; dc <= 1; dc++ ) {
+                int nr = r + dr;
+                int nc = c + dc;
+                if( nr >= 0 && nr < height && nc >= 0 && nc < width && floor[nr * width + nc] ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,117 @@
+package solver;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+
+/**
+    ` Tells a search when the heap is close to full, so it can shrink or hand over to a leaner
+    search before it runs out of memory. It watches the largest heap pool ( the old generation )
+    through its collection usage threshold: the JVM compares the pool's usage after each garbage
+    collection against it, so garbage that is still waiting for a collection does not count and
+    the watch never forces a collection itself. A reading is checked every CHECK_EVERY ticks, and
+    only a collection after the watch started, and after its last report, can report pressure:
+    a search that just shrank, or took over from one that let go of its memory, is not told to
+    shrink on a reading from before.
+
+    The pool is shared by the whole JVM, and so is its threshold; every watch sets it from its
+    own share, which is the same config.memoryThreshold in practice. Collectors without such a
+    pool turn the watch off.
+*/
+public class MemoryWatch {
+
+    private static final int CHECK_EVERY = 4096;
+
+    /*|************************************************************
+                              Attributes
+    ***************************************************************/
+    private final MemoryPoolMXBean pool;    // null when the watch is off
+    private final double threshold;         // share of the pool's maximum, 0 when off
+    private int countdown = CHECK_EVERY;
+    private double lastShare = 0;
+    private long reportedAt;                // collection count at the last report, or at the start
+
+    /*|************************************************************
+                          Constructor Methods
+    ***************************************************************/
+    /**
+        @param threshold    share of the old generation in use after a collection that counts as
+                            pressure, 0 for never
+    */
+    public MemoryWatch( double threshold ) {
+        this.pool = threshold > 0 ? largestHeapPool() : null;
+        this.threshold = pool == null ? 0 : threshold;
+        if( pool != null ) {
+            pool.setCollectionUsageThreshold(Math.max(1, (long) (pool.getUsage().getMax() * threshold)));
+            reportedAt = collections();
+        }
+    }
+
+    private static MemoryPoolMXBean largestHeapPool() {
+        MemoryPoolMXBean largest = null;
+        for( MemoryPoolMXBean candidate : ManagementFactory.getMemoryPoolMXBeans() ) {
+            if( candidate.getType() == MemoryType.HEAP && candidate.isCollectionUsageThresholdSupported()
+                    && candidate.getUsage().getMax() > 0
+                    && (largest == null || candidate.getUsage().getMax() > largest.getUsage().getMax()) ) {
+                largest = candidate;
+            }
+        }
+        return largest;
+    }
+
+    /*|************************************************************
+                                Checks
+    ***************************************************************/
+    /**
+        ` Called once per expansion; looks at the pool every CHECK_EVERY calls.
+    */
+    public boolean tick() {
+        if( threshold <= 0 || --countdown > 0 ) {
+            return false;
+        }
+        countdown = CHECK_EVERY;
+        return isPressed();
+    }
+
+    /**
+        ` Looks at the pool's usage after the last collection now.
+    */
+    public boolean isPressed() {
+        if( threshold <= 0 ) {
+            return false;
+        }
+        MemoryUsage afterCollection = pool.getCollectionUsage();
+        lastShare = afterCollection == null ? 0 : afterCollection.getUsed() / (double) pool.getUsage().getMax();
+        long collections = collections();
+        if( collections == reportedAt || !pool.isCollectionUsageThresholdExceeded() ) {
+            return false;
+        }
+        reportedAt = collections;
+        return true;
+    }
+
+    /**
+        ` Collections so far by the collectors that manage the pool.
+    */
+    private long collections() {
+        long count = 0;
+        for( GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans() ) {
+            for( String name : collector.getMemoryPoolNames() ) {
+                if( name.equals(pool.getName()) ) {
+                    count += Math.max(0, collector.getCollectionCount());
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+        ` Share of the pool in use after the last collection, at the last reading, for the
+        trigger notes in SolveStats.
+    */
+    public double lastShare() {
+        return lastShare;
+    }
+}
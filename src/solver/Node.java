@@ -6,6 +6,7 @@ public class Node {
     protected int heuristic; // Manhattan Distance
     protected Node parent;   // Reference to the parent node
     protected int prio;      // cost + heuristic
+    protected int order;     // generation order, breaks ties in the open list
 
     public Node( State state, int cost, int heuristic, Node parent ) {
         this.state = state;
@@ -0,0 +1,490 @@
+package solver;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+    ` Push-level A* that returns a provably shortest solution, counted in moves or in pushes.
+    Unlike the other searches it closes a state when it is expanded rather than when it is
+    generated, keeps the cost of every state it has seen, and lowers that cost ( with a fresh
+    open-list entry; stale entries are skipped when popped ) whenever a cheaper path turns up.
+
+    The heuristic is the cost of a minimum perfect matching of boxes to goals, each pair
+    weighted by the push distance of a lone box. It never overestimates, and one push changes
+    it by at most one while every transition costs at least one, so it is consistent for both
+    metrics. That proof is the fast path: a closed state is never looked at again. Every edge
+    is still checked, and the first one that breaks consistency ( which would take a change to
+    the heuristic ) turns on reopening of closed states for the rest of the search.
+
+    In the moves metric a state keeps the exact player cell, since the walk to the next push
+    depends on it, and a transition costs that walk plus one. In the pushes metric the player
+    cell is normalized and every transition costs one.
+
+    There is no hand-over to a beam when memory runs short; the search gives up instead.
+*/
+public class OptimalSearch {
+
+    private static final int INFINITE = 1 << 20;    // matching weight of a box that cannot reach a goal
+
+    /*|************************************************************
+                              Attributes
+    ***************************************************************/
+    private Board board;
+    private PushExpander expander;
+    private SolveStats stats;
+    private SearchProgress progress;
+    private boolean countMoves;
+    private boolean reopen = false;     // off while the heuristic is known to be consistent
+    private int boxCount;
+    private int stride;                 // ints per stored state: player, then boxes
+
+    // - Matching heuristic: push distance from each cell to each goal, cached per box configuration
+    private int[][] pushDistance;
+    private HeuristicCache cache;
+    private int[][] weight;
+    private int[] rowPotential, colPotential, matchOf, way;
+    private int[] slack;
+    private boolean[] used;
+
+    // - Node store: states in one pool, cost so far, parent links
+    private int nodeCount = 0;
+    private int[] states;
+    private int[] cost = new int[1024];
+    private int[] estimate = new int[1024];
+    private int[] parent = new int[1024];
+    private int[] push = new int[1024];
+    private boolean[] closed = new boolean[1024];
+
+    // - State table: open addressing over node ids + 1, 0 marks an empty slot
+    private int[] table = new int[2048];
+    private long[] zobrist;
+
+    // - Open list: binary heap of ( f << 32 | ( Integer.MAX_VALUE - g ) ) keys and their nodes,
+    //   so ties go to the deeper node
+    private long[] heapKey = new long[1024];
+    private int[] heapNode = new int[1024];
+    private int heapSize = 0;
+
+    // - Walking distances from the player in the state being expanded
+    private int[] walk;
+    private int[] walkMark;
+    private int[] walkQueue;
+    private int walkStamp = 0;
+
+    /*|************************************************************
+                          Constructor Methods
+    ***************************************************************/
+    /**
+        @param countMoves    true to minimize moves, false to minimize pushes
+    */
+    public OptimalSearch( Board board, SolverConfig config, SolveStats stats, boolean countMoves ) {
+        this.board = board;
+        this.expander = new PushExpander(board);
+        this.stats = stats;
+        this.progress = config.progress;
+        this.countMoves = countMoves;
+        this.boxCount = board.boxes.length;
+        this.stride = boxCount + 1;
+        this.states = new int[1024 * stride];
+        this.cache = new HeuristicCache(board, Math.max(1, config.heuristicCacheSlots));
+
+        Random random = new Random(board.size);
+        this.zobrist = new long[board.size * 2];
+        for( int i = 0; i < zobrist.length; i++ ) {
+            zobrist[i] = random.nextLong();
+        }
+
+        int n = board.goals.length;
+        this.weight = new int[n + 1][n + 1];
+        this.rowPotential = new int[n + 1];
+        this.colPotential = new int[n + 1];
+        this.matchOf = new int[n + 1];
+        this.way = new int[n + 1];
+        this.slack = new int[n + 1];
+        this.used = new boolean[n + 1];
+
+        this.walk = new int[board.size];
+        this.walkMark = new int[board.size];
+        this.walkQueue = new int[board.size];
+        pushDistances();
+    }
+
+    /*|************************************************************
+                              Main Method
+    ***************************************************************/
+    /**
+        ` Runs the search and turns the pushes into a move string.
+    */
+    public String solve() {
+        int[] pushes = search();
+        return pushes == null ? null : new SolutionOptimizer(board).buildSolution(pushes);
+    }
+
+    /**
+        ` Returns the pushes of a shortest solution, or null if there is none or a limit was hit.
+    */
+    public int[] search() {
+        if( boxCount != board.goals.length ) {
+            return null;
+        }
+        int[] start = board.boxes.clone();
+        int h = heuristic(start);
+        if( h == Integer.MAX_VALUE ) {
+            return null;
+        }
+
+        try {
+            int startPlayer = playerOf(board.player, start);
+            int root = addNode(startPlayer, start, 0, h, -1, -1);
+            table[find(startPlayer, start)] = root + 1;
+            pushOpen(root);
+
+            int[] boxes = new int[boxCount];
+            int[] next = new int[boxCount];
+            int[] pushes = new int[4 * Math.max(1, boxCount)];
+            while( heapSize > 0 ) {
+                int node = heapNode[0];
+                long key = heapKey[0];
+                popOpen();
+                if( closed[node] || (int) key != Integer.MAX_VALUE - cost[node] ) {
+                    continue;   // closed already, or a cheaper entry was queued after this one
+                }
+                closed[node] = true;
+
+                int player = states[node * stride];
+                System.arraycopy(states, node * stride + 1, boxes, 0, boxCount);
+                if( board.isSolved(boxes) ) {
+                    return tracePushes(node);
+                }
+                stats.expanded++;
+                if( stats.overLimit() ) {
+                    return null;
+                }
+                if( progress != null && progress.isDue() ) {
+                    progress.publish(board, player, boxes.clone(), estimate[node], cost[node] + estimate[node],
+                        heapSize, stats.expanded);
+                }
+
+                if( countMoves ) {
+                    walkFrom(player, boxes);
+                }
+                int count = expander.generate(player, boxes, pushes);
+                for( int i = 0; i < count; i++ ) {
+                    int from = pushes[i] >> 2;
+                    int step = countMoves ? walk[from - board.offset[pushes[i] & 3]] + 1 : 1;
+                    int nextPlayer = expander.apply(boxes, pushes[i], next);
+                    int nextH = heuristic(next);
+                    if( nextH == Integer.MAX_VALUE ) {
+                        continue;
+                    }
+                    if( !reopen && estimate[node] > step + nextH ) {
+                        stats.inconsistentEdges++;
+                        reopen = true;
+                    }
+                    relax(node, pushes[i], playerOf(nextPlayer, next), next, cost[node] + step, nextH);
+                }
+            }
+            return null;
+        } catch( OutOfMemoryError ex ) {
+            states = null;
+            table = null;
+            stats.triggers.add(String.format("out of memory at %d expanded", stats.expanded));
+            return null;
+        } finally {
+            stats.closedStates = nodeCount;
+            if( states != null && nodeCount > 0 ) {
+                long bytes = states.length * 4L + cost.length * 17L + table.length * 4L;
+                stats.closedBytesPerState = bytes / (double) nodeCount;
+                stats.closedLoadFactor = nodeCount / (double) table.length;
+            }
+            stats.recordHeuristicCache(cache);
+        }
+    }
+
+    /**
+        ` Files a successor, or lowers the cost of the state when this path is cheaper. A closed
+        state is only reopened once consistency is in doubt.
+    */
+    private void relax( int from, int pushCode, int player, int[] boxes, int g, int h ) {
+        int slot = find(player, boxes);
+        int node = table[slot] - 1;
+        if( node < 0 ) {
+            node = addNode(player, boxes, g, h, from, pushCode);
+            table[find(player, boxes)] = node + 1;
+            pushOpen(node);
+            stats.generated++;
+            return;
+        }
+        if( g >= cost[node] || (closed[node] && !reopen) ) {
+            return;
+        }
+        if( closed[node] ) {
+            closed[node] = false;
+            stats.reopened++;
+        }
+        cost[node] = g;
+        parent[node] = from;
+        push[node] = pushCode;
+        pushOpen(node);
+    }
+
+    private int playerOf( int player, int[] boxes ) {
+        return countMoves ? player : expander.normalize(player, boxes);
+    }
+
+    private int[] tracePushes( int node ) {
+        int length = 0;
+        for( int n = node; parent[n] >= 0; n = parent[n] ) {
+            length++;
+        }
+        int[] pushes = new int[length];
+        for( int n = node; parent[n] >= 0; n = parent[n] ) {
+            pushes[--length] = push[n];
+        }
+        return pushes;
+    }
+
+    /**
+        ` BFS walking distances from the player around the boxes, into `walk`.
+    */
+    private void walkFrom( int player, int[] boxes ) {
+        walkStamp++;
+        for( int box : boxes ) {
+            walkMark[box] = walkStamp;
+            walk[box] = Integer.MAX_VALUE;
+        }
+        int head = 0, tail = 0;
+        walkQueue[tail++] = player;
+        walkMark[player] = walkStamp;
+        walk[player] = 0;
+        while( head < tail ) {
+            int cell = walkQueue[head++];
+            for( int i = 0; i < 4; i++ ) {
+                int next = cell + board.offset[i];
+                if( board.isFloor(next) && walkMark[next] != walkStamp ) {
+                    walkMark[next] = walkStamp;
+                    walk[next] = walk[cell] + 1;
+                    walkQueue[tail++] = next;
+                }
+            }
+        }
+    }
+
+    /*|************************************************************
+                               Heuristic
+    ***************************************************************/
+    /**
+        ` Pulls a lone box back from each goal, so pushDistance[g][cell] is the fewest pushes
+        from cell to goal g with the player free to walk anywhere.
+    */
+    private void pushDistances() {
+        pushDistance = new int[board.goals.length][];
+        int[] queue = new int[board.size];
+        for( int g = 0; g < board.goals.length; g++ ) {
+            int[] distance = new int[board.size];
+            Arrays.fill(distance, INFINITE);
+            int head = 0, tail = 0;
+            distance[board.goals[g]] = 0;
+            queue[tail++] = board.goals[g];
+            while( head < tail ) {
+                int cell = queue[head++];
+                for( int i = 0; i < 4; i++ ) {
+                    int next = cell + board.offset[i];
+                    if( board.isFloor(next) && board.isFloor(next + board.offset[i]) && distance[next] == INFINITE ) {
+                        distance[next] = distance[cell] + 1;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            pushDistance[g] = distance;
+        }
+    }
+
+    /**
+        ` Minimum matching cost of boxes to goals, or Integer.MAX_VALUE when some box cannot be
+        given a goal of its own.
+    */
+    private int heuristic( int[] boxes ) {
+        long key = cache.key(boxes);
+        int h = cache.get(key);
+        if( h == HeuristicCache.MISSING ) {
+            h = matching(boxes);
+            cache.put(key, h);
+        }
+        return h;
+    }
+
+    /**
+        ` Hungarian algorithm with potentials, O( n^3 ), boxes as rows and goals as columns.
+    */
+    private int matching( int[] boxes ) {
+        int n = boxes.length;
+        for( int b = 0; b < n; b++ ) {
+            for( int g = 0; g < n; g++ ) {
+                weight[b + 1][g + 1] = pushDistance[g][boxes[b]];
+            }
+        }
+        Arrays.fill(rowPotential, 0);
+        Arrays.fill(colPotential, 0);
+        Arrays.fill(matchOf, 0);
+
+        for( int row = 1; row <= n; row++ ) {
+            matchOf[0] = row;
+            int col = 0;
+            Arrays.fill(slack, Integer.MAX_VALUE);
+            Arrays.fill(used, false);
+            do {
+                used[col] = true;
+                int r = matchOf[col];
+                int delta = Integer.MAX_VALUE;
+                int nextCol = 0;
+                for( int c = 1; c <= n; c++ ) {
+                    if( used[c] ) {
+                        continue;
+                    }
+                    int reduced = weight[r][c] - rowPotential[r] - colPotential[c];
+                    if( reduced < slack[c] ) {
+                        slack[c] = reduced;
+                        way[c] = col;
+                    }
+                    if( slack[c] < delta ) {
+                        delta = slack[c];
+                        nextCol = c;
+                    }
+                }
+                for( int c = 0; c <= n; c++ ) {
+                    if( used[c] ) {
+                        rowPotential[matchOf[c]] += delta;
+                        colPotential[c] -= delta;
+                    } else {
+                        slack[c] -= delta;
+                    }
+                }
+                col = nextCol;
+            } while( matchOf[col] != 0 );
+            do {
+                int previous = way[col];
+                matchOf[col] = matchOf[previous];
+                col = previous;
+            } while( col != 0 );
+        }
+
+        int total = 0;
+        for( int c = 1; c <= n; c++ ) {
+            total += weight[matchOf[c]][c];
+        }
+        return total >= INFINITE ? Integer.MAX_VALUE : total;
+    }
+
+    /*|************************************************************
+                              Node Store
+    ***************************************************************/
+    private int addNode( int player, int[] boxes, int g, int h, int parentNode, int pushCode ) {
+        if( nodeCount == cost.length ) {
+            int capacity = nodeCount * 2;
+            states = Arrays.copyOf(states, capacity * stride);
+            cost = Arrays.copyOf(cost, capacity);
+            estimate = Arrays.copyOf(estimate, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            push = Arrays.copyOf(push, capacity);
+            closed = Arrays.copyOf(closed, capacity);
+        }
+        int node = nodeCount++;
+        states[node * stride] = player;
+        System.arraycopy(boxes, 0, states, node * stride + 1, boxCount);
+        cost[node] = g;
+        estimate[node] = h;
+        parent[node] = parentNode;
+        push[node] = pushCode;
+
+        if( nodeCount * 2 > table.length ) {
+            growTable();
+        }
+        return node;
+    }
+
+    /**
+        ` The slot of a state in the table, or the empty slot where it would go.
+    */
+    private int find( int player, int[] boxes ) {
+        long hash = zobrist[board.size + player];
+        for( int box : boxes ) {
+            hash ^= zobrist[box];
+        }
+        int mask = table.length - 1;
+        for( int slot = (int) (hash ^ hash >>> 32) & mask; ; slot = (slot + 1) & mask ) {
+            int node = table[slot] - 1;
+            if( node < 0 || sameState(node, player, boxes) ) {
+                return slot;
+            }
+        }
+    }
+
+    private boolean sameState( int node, int player, int[] boxes ) {
+        int base = node * stride;
+        if( states[base] != player ) {
+            return false;
+        }
+        for( int i = 0; i < boxCount; i++ ) {
+            if( states[base + 1 + i] != boxes[i] ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+        ` Doubles the table and files every node again, so the caller's own filing of the newest
+        node finds it already there.
+    */
+    private void growTable() {
+        table = new int[table.length * 2];
+        int[] boxes = new int[boxCount];
+        for( int node = 0; node < nodeCount; node++ ) {
+            System.arraycopy(states, node * stride + 1, boxes, 0, boxCount);
+            table[find(states[node * stride], boxes)] = node + 1;
+        }
+    }
+
+    /*|************************************************************
+                               Open List
+    ***************************************************************/
+    private void pushOpen( int node ) {
+        if( heapSize == heapKey.length ) {
+            heapKey = Arrays.copyOf(heapKey, heapSize * 2);
+            heapNode = Arrays.copyOf(heapNode, heapSize * 2);
+        }
+        long key = (long) (cost[node] + estimate[node]) << 32 | (Integer.MAX_VALUE - cost[node]);
+        int i = heapSize++;
+        while( i > 0 && heapKey[(i - 1) / 2] > key ) {
+            heapKey[i] = heapKey[(i - 1) / 2];
+            heapNode[i] = heapNode[(i - 1) / 2];
+            i = (i - 1) / 2;
+        }
+        heapKey[i] = key;
+        heapNode[i] = node;
+    }
+
+    private void popOpen() {
+        long key = heapKey[--heapSize];
+        int node = heapNode[heapSize];
+        int i = 0;
+        while( true ) {
+            int child = 2 * i + 1;
+            if( child >= heapSize ) {
+                break;
+            }
+            if( child + 1 < heapSize && heapKey[child + 1] < heapKey[child] ) {
+                child++;
+            }
+            if( heapKey[child] >= key ) {
+                break;
+            }
+            heapKey[i] = heapKey[child];
+            heapNode[i] = heapNode[child];
+            i = child;
+        }
+        heapKey[i] = key;
+        heapNode[i] = node;
+    }
+}
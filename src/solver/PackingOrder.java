@@ -0,0 +1,202 @@
+package solver;
+
+import java.util.*;
+
+/**
+    ` Retrograde analysis of a goal room. Starting from the room completely filled, boxes are
+    pulled back out one layer at a time: a layer holds every box that can still be pulled out of
+    the room with the remaining boxes in place. Played forwards, the layers give a packing order
+    in which no box blocks another one; goals in the same layer may be filled in any order.
+*/
+public class PackingOrder {
+
+    /*|************************************************************
+                              Attributes
+    ***************************************************************/
+    private static final int MAX_PULL_STATES = 200000;   // per removal test
+
+    protected Board board;
+    protected int[] rank;       // rank[cell] = layer in which the goal is filled ( 0 first ), -1 otherwise
+    protected int layers;       // 0 when no order is available
+
+    /*|************************************************************
+                          Constructor Methods
+    ***************************************************************/
+    /**
+        ` Runs the retrograde analysis. The order is only built for levels whose goals form a
+        single connected room and have as many boxes as goals.
+    */
+    public PackingOrder( Board board ) {
+        this.board = board;
+        this.rank = new int[board.size];
+        Arrays.fill(rank, -1);
+
+        if( board.goals.length == 0 || board.goals.length != board.boxes.length || !isSingleRoom() ) {
+            return;
+        }
+
+        boolean[] filled = new boolean[board.size];
+        for( int goal : board.goals ) {
+            filled[goal] = true;
+        }
+
+        // - Peel off every removable box at once; each pass becomes one layer
+        List<List<Integer>> removal = new ArrayList<>();
+        int remaining = board.goals.length;
+        while( remaining > 0 ) {
+            List<Integer> layer = new ArrayList<>();
+            for( int goal : board.goals ) {
+                if( filled[goal] && isRemovable(goal, filled) ) {
+                    layer.add(goal);
+                }
+            }
+
+            if( layer.isEmpty() ) {
+                Arrays.fill(rank, -1);   // the room cannot be packed without help; leave the search alone
+                return;
+            }
+            for( int goal : layer ) {
+                filled[goal] = false;
+            }
+            remaining -= layer.size();
+            removal.add(layer);
+        }
+
+        // - The last layer pulled out is the first one filled
+        layers = removal.size();
+        for( int i = 0; i < layers; i++ ) {
+            for( int goal : removal.get(i) ) {
+                rank[goal] = layers - 1 - i;
+            }
+        }
+    }
+
+    /*|************************************************************
+                            Class Methods
+    ***************************************************************/
+    public boolean isAvailable() {
+        return layers > 0;
+    }
+
+    /**
+        ` Checks if a goal may receive a box given the boxes on the board: every goal from an
+        earlier layer has to be filled already.
+    */
+    public boolean isFillable( int goal, boolean[] boxAt ) {
+        return rank[goal] <= lowestOpenRank(boxAt);
+    }
+
+    /**
+        ` Returns the lowest layer that still has an empty goal, or Integer.MAX_VALUE when every
+        goal is filled. Goals of this layer are the current targets.
+    */
+    public int lowestOpenRank( boolean[] boxAt ) {
+        int lowest = Integer.MAX_VALUE;
+        for( int goal : board.goals ) {
+            if( !boxAt[goal] && rank[goal] < lowest ) {
+                lowest = rank[goal];
+            }
+        }
+        return lowest;
+    }
+
+    /*|************************************************************
+                          Retrograde Analysis
+    ***************************************************************/
+    /**
+        ` Checks if the goals form one 4-connected block.
+    */
+    private boolean isSingleRoom() {
+        boolean[] seen = new boolean[board.size];
+        int[] queue = new int[board.goals.length];
+        int head = 0, tail = 0;
+        queue[tail++] = board.goals[0];
+        seen[board.goals[0]] = true;
+
+        while( head < tail ) {
+            int curr = queue[head++];
+            for( int i = 0; i < 4; i++ ) {
+                int next = board.neighbor(curr, i);
+                if( next >= 0 && board.goal[next] && !seen[next] ) {
+                    seen[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return tail == board.goals.length;
+    }
+
+    /**
+        ` Checks if the box on `goal` can be pulled onto a non-goal square while the other
+        filled goals keep their boxes. Searches over ( box cell, player cell ) pairs.
+    */
+    private boolean isRemovable( int goal, boolean[] filled ) {
+        boolean[] reach = playerRegion(filled);
+        Set<Long> visited = new HashSet<>();
+        ArrayDeque<long[]> queue = new ArrayDeque<>();
+
+        for( int i = 0; i < 4; i++ ) {
+            int player = goal + board.offset[i];
+            if( board.isFloor(player) && reach[player] ) {
+                queue.add(new long[] { goal, player });
+                visited.add((long) goal * board.size + player);
+            }
+        }
+
+        while( !queue.isEmpty() && visited.size() < MAX_PULL_STATES ) {
+            long[] curr = queue.poll();
+            int box = (int) curr[0];
+            int player = (int) curr[1];
+
+            if( !board.goal[box] ) {
+                return true;
+            }
+
+            for( int i = 0; i < 4; i++ ) {
+                int next = player + board.offset[i];
+                if( !board.isFloor(next) || next == box || (filled[next] && next != goal) ) {
+                    continue;
+                }
+
+                // - Either just step, or, when the box is right behind the player, pull it along
+                if( visited.add((long) box * board.size + next) ) {
+                    queue.add(new long[] { box, next });
+                }
+                if( player - board.offset[i] == box && visited.add((long) player * board.size + next) ) {
+                    queue.add(new long[] { player, next });
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+        ` Marks the squares the player can reach from outside the room while the filled goals
+        hold boxes. Every non-goal square is a starting point, since in the packed position the
+        player may have finished anywhere outside the room ( even in a pocket next to it ).
+    */
+    private boolean[] playerRegion( boolean[] filled ) {
+        boolean[] reach = new boolean[board.size];
+        int[] queue = new int[board.size];
+        int head = 0, tail = 0;
+
+        for( int cell = 0; cell < board.size; cell++ ) {
+            if( board.floor[cell] && !board.goal[cell] ) {
+                queue[tail++] = cell;
+                reach[cell] = true;
+            }
+        }
+
+        while( head < tail ) {
+            int curr = queue[head++];
+            for( int i = 0; i < 4; i++ ) {
+                int next = curr + board.offset[i];
+                if( board.isFloor(next) && !filled[next] && !reach[next] ) {
+                    reach[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return reach;
+    }
+}
@@ -0,0 +1,104 @@
+package solver;
+
+/**
+    ` Generates push-level successors. A push-level state is a sorted list of box cells plus
+    the player's canonical cell ( the lowest square of the player's region ), so every walk
+    between two pushes collapses into a single transition.
+*/
+public class PushExpander {
+
+    /*|************************************************************
+                              Attributes
+    ***************************************************************/
+    protected Board board;
+    protected BitBoard bitBoard;
+
+    private long[] boxBits;
+    private int[] pushBuffer;
+
+    /*|************************************************************
+                          Constructor Methods
+    ***************************************************************/
+    public PushExpander( Board board ) {
+        this.board = board;
+        this.bitBoard = new BitBoard(board);
+        this.boxBits = bitBoard.newSet();
+        this.pushBuffer = new int[4 * Math.max(1, board.boxes.length)];
+    }
+
+    /*|************************************************************
+                            Class Methods
+    ***************************************************************/
+    /**
+        ` Returns the canonical cell of the player's region.
+    */
+    public int normalize( int player, int[] boxes ) {
+        bitBoard.boxesToBits(boxes, boxBits);
+        return bitBoard.canonicalCell(bitBoard.reachable(player, boxBits));
+    }
+
+    /**
+        ` Lists the pushes available in a state, skipping pushes onto dead squares.
+
+        @param out    receives ( box cell * 4 + direction ) codes; needs room for 4 * boxes
+        @return the number of pushes written
+    */
+    public int generate( int player, int[] boxes, int[] out ) {
+        bitBoard.boxesToBits(boxes, boxBits);
+        long[] reach = bitBoard.reachable(player, boxBits);
+        int found = bitBoard.pushes(reach, boxBits, boxes, pushBuffer);
+
+        int count = 0;
+        for( int i = 0; i < found; i++ ) {
+            int push = pushBuffer[i];
+            if( !board.dead[(push >> 2) + board.offset[push & 3]] ) {
+                out[count++] = push;
+            }
+        }
+        return count;
+    }
+
+    /**
+        ` Writes the box list after a push into `out`, keeping it sorted.
+
+        @return the player's cell after the push ( where the box stood ), not yet normalized
+    */
+    public int apply( int[] boxes, int push, int[] out ) {
+        int from = push >> 2;
+        int to = from + board.offset[push & 3];
+
+        // - Drop the moved box and insert its new cell in order
+        int count = 0;
+        boolean inserted = false;
+        for( int box : boxes ) {
+            if( box == from ) {
+                continue;
+            }
+            if( !inserted && to < box ) {
+                out[count++] = to;
+                inserted = true;
+            }
+            out[count++] = box;
+        }
+        if( !inserted ) {
+            out[count] = to;
+        }
+        return from;
+    }
+
+    /**
+        ` Sum of every box's push distance to its nearest goal, or Integer.MAX_VALUE when a box
+        is on a dead square. Never overestimates the pushes left.
+    */
+    public int heuristic( int[] boxes ) {
+        int total = 0;
+        for( int box : boxes ) {
+            int distance = board.goalDistance[box];
+            if( distance == Integer.MAX_VALUE ) {
+                return Integer.MAX_VALUE;
+            }
+            total += distance;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,482 @@
+package solver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+    ` In-memory push-level search. Each node is one push; the walking in between is left to
+    SolutionOptimizer.buildSolution. Nodes live in parallel int arrays, and a node's box list is
+    dropped once it has been expanded, since the path is rebuilt from the push codes alone.
+
+    A* orders the open list by pushes + heuristic, greedy by the heuristic only. Ties go to the
+    smaller heuristic and then, with inertia on, to a push that carries on the last one. With
+    relevance cuts on, a push far from the last pushed box is dropped once too many such pushes
+    came in a row; if that leaves no solution the search runs again without cuts. When the
+    MemoryWatch reports the heap close to full, or a growing table does not fit any more, the
+    search drops everything it holds and hands over to a BeamSearch, which answers without the
+    optimality guarantee.
+
+    With a checkpoint file set, the node store, the open list and the closed set are written out
+    every checkpointSeconds, and resume() carries on from there after a restart. The file is
+    deleted once the search has solved the level or run out of nodes; a search stopped by a
+    limit or handed over under memory pressure leaves it for resume(). With
+    config.bitstateBytes set the closed set is a BitstateClosedSet instead, which may drop
+    states, and no checkpoints are written.
+*/
+public class PushSearch {
+
+    /*|************************************************************
+                              Attributes
+    ***************************************************************/
+    private Board board;
+    private PushExpander expander;
+    private ClosedSet closed;
+    private boolean greedy;
+    private boolean inertia;
+    private int relevanceCuts;      // 0 when off
+    private int relevanceRadius;
+    private SolverConfig config;
+    private SolveStats stats;
+    private SearchProgress progress;
+    private MemoryWatch watch;
+    private boolean pressed = false;     // stopped by the memory watch
+
+    // - Checkpoints, null path when off
+    private Path checkpointPath;
+    private long checkpointNanos;
+    private long nextCheckpoint;
+
+    // - Lowest heuristic generated so far, kept for the progress snapshots
+    private int bestH = Integer.MAX_VALUE;
+    private int bestPlayer;
+    private int[] bestBoxes;
+
+    // - Node store
+    private int nodeCount = 0;
+    private int[] parent = new int[1024];
+    private int[] push = new int[1024];      // push that led here, -1 for the root
+    private int[] cost = new int[1024];      // pushes so far
+    private int[] estimate = new int[1024];  // heuristic
+    private int[] player = new int[1024];    // player cell right after the push
+    private int[][] boxesOf = new int[1024][];
+    private boolean[] straight = new boolean[1024];   // same box, same direction as the parent's push
+    private int[] streak = new int[1024];             // pushes in a row away from the last pushed box
+
+    // - Open list: binary heap of node ids
+    private int[] heap = new int[1024];
+    private int heapSize = 0;
+
+    /*|************************************************************
+                          Constructor Methods
+    ***************************************************************/
+    public PushSearch( Board board, SolverConfig config, SolveStats stats ) {
+        this(board, config, stats, config.relevanceCuts);
+    }
+
+    private PushSearch( Board board, SolverConfig config, SolveStats stats, int relevanceCuts ) {
+        this.board = board;
+        this.expander = new PushExpander(board);
+        this.closed = config.bitstateBytes > 0
+            ? new BitstateClosedSet(board, config.bitstateBytes) : new CompactClosedSet(board);
+        this.greedy = SolverConfig.MODE_GREEDY.equals(config.mode);
+        this.inertia = config.inertia;
+        this.relevanceCuts = relevanceCuts;
+        this.relevanceRadius = config.relevanceRadius;
+        this.config = config;
+        this.stats = stats;
+        this.progress = config.progress;
+        this.watch = new MemoryWatch(config.memoryThreshold);
+        // - A bitstate set cannot be written out, so there are no checkpoints with one
+        this.checkpointPath = config.checkpointFile == null || config.bitstateBytes > 0
+            ? null : Paths.get(config.checkpointFile);
+        this.checkpointNanos = config.checkpointSeconds * 1000000000L;
+        this.nextCheckpoint = System.nanoTime() + checkpointNanos;
+    }
+
+    /*|************************************************************
+                              Main Method
+    ***************************************************************/
+    /**
+        ` Runs the search and returns the pushes of a solution, or null if there is none.
+    */
+    public int[] search() {
+        int[] start = board.boxes.clone();
+        int h = expander.heuristic(start);
+        if( h == Integer.MAX_VALUE ) {
+            return null;
+        }
+
+        closed.add(expander.normalize(board.player, start), start);
+        addNode(-1, -1, 0, h, board.player, start);
+        return run();
+    }
+
+    /**
+        ` Carries on from the checkpoint file, or starts a new search when there is no usable one.
+    */
+    public int[] resumeSearch() {
+        PushSearch restored = restore();
+        return restored == null ? search() : restored.run();
+    }
+
+    /**
+        ` A search read back from the checkpoint file, or null when there is no usable one. The
+        checkpoint is read into a fresh search, so a file that fails halfway leaves this one
+        untouched.
+    */
+    private PushSearch restore() {
+        if( checkpointPath == null || !Files.exists(checkpointPath) ) {
+            return null;
+        }
+        PushSearch restored = new PushSearch(board, config, stats, relevanceCuts);
+        try( Checkpoint.Input in = new Checkpoint.Input(checkpointPath, board) ) {
+            restored.readCheckpoint(in);
+            return restored;
+        } catch( IOException ex ) {
+            ex.printStackTrace(System.err);
+            return null;
+        }
+    }
+
+    private int[] run() {
+        int[] pushes = new int[4 * Math.max(1, board.boxes.length)];
+        try {
+            while( heapSize > 0 ) {
+                if( checkpointPath != null && System.nanoTime() >= nextCheckpoint ) {
+                    writeCheckpoint();
+                }
+
+                int node = pop();
+                int[] boxes = boxesOf[node];
+
+                if( board.isSolved(boxes) ) {
+                    deleteCheckpoint();
+                    return tracePushes(node);
+                }
+                boxesOf[node] = null;
+                stats.expanded++;
+                if( stats.overLimit() ) {
+                    return null;
+                }
+                if( watch.tick() ) {
+                    stats.triggers.add(String.format("%d expanded at %.0f%% heap: %s -> %s",
+                        stats.expanded, 100 * watch.lastShare(), config.mode, SolverConfig.MODE_BEAM));
+                    pressed = true;
+                    return null;
+                }
+
+                if( progress != null && progress.isDue() ) {
+                    int f = greedy ? estimate[node] : cost[node] + estimate[node];
+                    progress.publish(board, bestPlayer, bestBoxes, bestH, f, heapSize, stats.expanded);
+                }
+
+                int count = expander.generate(player[node], boxes, pushes);
+                for( int i = 0; i < count; i++ ) {
+                    if( relevanceCuts > 0 && node > 0 && !isRelevant(node, pushes[i]) && streak[node] >= relevanceCuts ) {
+                        continue;
+                    }
+                    int[] next = new int[boxes.length];
+                    int nextPlayer = expander.apply(boxes, pushes[i], next);
+                    int nextH = expander.heuristic(next);
+                    if( nextH == Integer.MAX_VALUE ) {
+                        continue;
+                    }
+
+                    // - Mark states seen as soon as they are generated, like A_Star does
+                    if( closed.add(expander.normalize(nextPlayer, next), next) ) {
+                        addNode(node, pushes[i], cost[node] + 1, nextH, nextPlayer, next);
+                        stats.generated++;
+                    }
+                }
+            }
+            deleteCheckpoint();
+            return null;
+        } catch( OutOfMemoryError ex ) {
+            // - A table doubled before the watch saw it coming; the failed allocation left the
+            //   heap as it was, and the search state is dropped anyway
+            stats.triggers.add(String.format("out of memory at %d expanded: %s -> %s",
+                stats.expanded, config.mode, SolverConfig.MODE_BEAM));
+            pressed = true;
+            return null;
+        } finally {
+            stats.recordClosedSet(closed);
+            stats.nodeStoreBytes = nodeStoreBytes();
+        }
+    }
+
+    /**
+        ` Runs the search and turns the pushes into a move string.
+    */
+    public String solve() {
+        return finish(search());
+    }
+
+    /**
+        ` Like solve(), but carries on from the checkpoint file when there is one.
+    */
+    public String resume() {
+        PushSearch restored = restore();
+        return restored == null ? solve() : restored.finish(restored.run());
+    }
+
+    private String finish( int[] pushes ) {
+        if( pressed ) {
+            release();
+            stats.mode = config.mode + " -> " + SolverConfig.MODE_BEAM;
+            return new BeamSearch(board, config, stats).solve();
+        }
+
+        // - The cuts only prune; if they ruled out every solution, search again without them
+        if( pushes == null && relevanceCuts > 0 && !stats.limitReached ) {
+            release();
+            return new PushSearch(board, config, stats, 0).solve();
+        }
+        return pushes == null ? null : new SolutionOptimizer(board).buildSolution(pushes);
+    }
+
+    /**
+        ` Lets go of the node store and the closed set before another search takes over.
+    */
+    private void release() {
+        closed = null;
+        parent = push = cost = estimate = player = streak = heap = null;
+        boxesOf = null;
+        straight = null;
+        bestBoxes = null;
+    }
+
+    /**
+        ` A push is relevant to a node when it moves the box the node's push moved, or a box
+        within relevanceRadius steps of where that box ended up.
+    */
+    private boolean isRelevant( int node, int pushCode ) {
+        int last = (push[node] >> 2) + board.offset[push[node] & 3];
+        int box = pushCode >> 2;
+        int distance = Math.abs(board.row(box) - board.row(last)) + Math.abs(board.col(box) - board.col(last));
+        return distance <= relevanceRadius;
+    }
+
+    /**
+        ` Heap bytes of the node store and the open list, counting the box list each open node
+        still holds ( 16 bytes of array header, compressed references ).
+    */
+    private long nodeStoreBytes() {
+        long perNode = 6 * Integer.BYTES + 1 + 4;
+        return parent.length * perNode + heap.length * (long) Integer.BYTES
+            + heapSize * (16L + Integer.BYTES * board.boxes.length);
+    }
+
+    private int[] tracePushes( int node ) {
+        int[] pushes = new int[cost[node]];
+        for( int i = pushes.length - 1; i >= 0; i-- ) {
+            pushes[i] = push[node];
+            node = parent[node];
+        }
+        return pushes;
+    }
+
+    /*|************************************************************
+                              Checkpoints
+    ***************************************************************/
+    /**
+        ` Writes the whole search: settings, counters, the node store, the open list with the box
+        lists of its nodes ( expanded nodes have none ), and the closed set.
+    */
+    private void writeCheckpoint() {
+        long begin = System.nanoTime();
+        try( Checkpoint.Output out = new Checkpoint.Output(checkpointPath, board) ) {
+            out.writeInt(greedy ? 1 : 0);
+            out.writeInt(relevanceCuts);
+            out.writeLong(stats.expanded);
+            out.writeLong(stats.generated);
+
+            out.writeInt(nodeCount);
+            out.writeInts(parent, nodeCount);
+            out.writeInts(push, nodeCount);
+            out.writeInts(cost, nodeCount);
+            out.writeInts(estimate, nodeCount);
+            out.writeInts(player, nodeCount);
+            out.writeInts(streak, nodeCount);
+            for( int i = 0; i < nodeCount; i += 64 ) {
+                long bits = 0;
+                for( int j = i; j < Math.min(nodeCount, i + 64); j++ ) {
+                    bits |= straight[j] ? 1L << (j - i) : 0;
+                }
+                out.writeLong(bits);
+            }
+
+            out.writeInt(heapSize);
+            out.writeInts(heap, heapSize);
+            for( int i = 0; i < heapSize; i++ ) {
+                out.writeInts(boxesOf[heap[i]], board.boxes.length);
+            }
+
+            out.writeInt(bestH);
+            out.writeInt(bestPlayer);
+            out.writeInts(bestBoxes, board.boxes.length);
+
+            ((CompactClosedSet) closed).writeTo(out);
+            stats.checkpointBytes = out.bytesWritten();
+            out.commit();
+            stats.checkpoints++;
+        } catch( IOException ex ) {
+            ex.printStackTrace(System.err);
+        }
+        stats.checkpointMillis += (System.nanoTime() - begin) / 1000000;
+        nextCheckpoint = System.nanoTime() + checkpointNanos;
+    }
+
+    private void readCheckpoint( Checkpoint.Input in ) throws IOException {
+        if( in.readInt() != (greedy ? 1 : 0) ) {
+            throw new IOException(checkpointPath + " was written by another mode");
+        }
+        relevanceCuts = in.readInt();
+        // - The counters go into the stats once everything is read
+        long expanded = in.readLong();
+        long generated = in.readLong();
+
+        nodeCount = in.readInt();
+        int capacity = Math.max(1024, nodeCount);
+        parent = new int[capacity];
+        push = new int[capacity];
+        cost = new int[capacity];
+        estimate = new int[capacity];
+        player = new int[capacity];
+        streak = new int[capacity];
+        straight = new boolean[capacity];
+        boxesOf = new int[capacity][];
+        in.readInts(parent, nodeCount);
+        in.readInts(push, nodeCount);
+        in.readInts(cost, nodeCount);
+        in.readInts(estimate, nodeCount);
+        in.readInts(player, nodeCount);
+        in.readInts(streak, nodeCount);
+        for( int i = 0; i < nodeCount; i += 64 ) {
+            long bits = in.readLong();
+            for( int j = i; j < Math.min(nodeCount, i + 64); j++ ) {
+                straight[j] = (bits >>> (j - i) & 1) != 0;
+            }
+        }
+
+        heapSize = in.readInt();
+        heap = new int[Math.max(1024, heapSize)];
+        in.readInts(heap, heapSize);
+        for( int i = 0; i < heapSize; i++ ) {
+            boxesOf[heap[i]] = new int[board.boxes.length];
+            in.readInts(boxesOf[heap[i]], board.boxes.length);
+        }
+
+        bestH = in.readInt();
+        bestPlayer = in.readInt();
+        bestBoxes = new int[board.boxes.length];
+        in.readInts(bestBoxes, board.boxes.length);
+
+        ((CompactClosedSet) closed).readFrom(in);
+        stats.expanded = expanded;
+        stats.generated = generated;
+    }
+
+    private void deleteCheckpoint() {
+        if( checkpointPath == null ) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(checkpointPath);
+        } catch( IOException ex ) {
+            ex.printStackTrace(System.err);
+        }
+    }
+
+    /*|************************************************************
+                              Node Store
+    ***************************************************************/
+    private void addNode( int parentNode, int pushCode, int g, int h, int playerCell, int[] boxes ) {
+        if( nodeCount == parent.length ) {
+            int capacity = nodeCount * 2;
+            parent = Arrays.copyOf(parent, capacity);
+            push = Arrays.copyOf(push, capacity);
+            cost = Arrays.copyOf(cost, capacity);
+            estimate = Arrays.copyOf(estimate, capacity);
+            player = Arrays.copyOf(player, capacity);
+            boxesOf = Arrays.copyOf(boxesOf, capacity);
+            straight = Arrays.copyOf(straight, capacity);
+            streak = Arrays.copyOf(streak, capacity);
+        }
+
+        if( h < bestH ) {
+            bestH = h;
+            bestPlayer = playerCell;
+            bestBoxes = boxes;
+        }
+
+        int node = nodeCount++;
+        parent[node] = parentNode;
+        push[node] = pushCode;
+        cost[node] = g;
+        estimate[node] = h;
+        player[node] = playerCell;
+        boxesOf[node] = boxes;
+        straight[node] = parentNode > 0 && pushCode >> 2 == (push[parentNode] >> 2) + board.offset[push[parentNode] & 3]
+                         && (pushCode & 3) == (push[parentNode] & 3);
+        streak[node] = parentNode <= 0 || isRelevant(parentNode, pushCode) ? 0 : streak[parentNode] + 1;
+        offer(node);
+    }
+
+    /*|************************************************************
+                              Open List
+    ***************************************************************/
+    /**
+        ` A* compares f = g + h and breaks ties towards the smaller h; greedy compares h and
+        breaks ties towards fewer pushes. Remaining ties go to the push that carries on its
+        parent's push when inertia is on.
+    */
+    private boolean before( int a, int b ) {
+        int first = greedy ? estimate[a] : cost[a] + estimate[a];
+        int second = greedy ? estimate[b] : cost[b] + estimate[b];
+        if( first != second ) {
+            return first < second;
+        }
+        first = greedy ? cost[a] : estimate[a];
+        second = greedy ? cost[b] : estimate[b];
+        if( first != second ) {
+            return first < second;
+        }
+        return inertia && straight[a] && !straight[b];
+    }
+
+    private void offer( int node ) {
+        if( heapSize == heap.length ) {
+            heap = Arrays.copyOf(heap, heapSize * 2);
+        }
+
+        int i = heapSize++;
+        while( i > 0 && before(node, heap[(i - 1) / 2]) ) {
+            heap[i] = heap[(i - 1) / 2];
+            i = (i - 1) / 2;
+        }
+        heap[i] = node;
+    }
+
+    private int pop() {
+        int top = heap[0];
+        int last = heap[--heapSize];
+
+        int i = 0;
+        while( 2 * i + 1 < heapSize ) {
+            int child = 2 * i + 1;
+            if( child + 1 < heapSize && before(heap[child + 1], heap[child]) ) {
+                child++;
+            }
+            if( !before(heap[child], last) ) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return top;
+    }
+}
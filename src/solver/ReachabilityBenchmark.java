@@ -0,0 +1,125 @@
+package solver;
+
+import java.io.File;
+import java.util.*;
+
+import reader.FileReader;
+import reader.MapData;
+
+/**
+    ` Compares the BitBoard flood fill against a queue-based BFS written the same way as
+    State.performPull ( LinkedList of Coordinates, a new object per visited square ).
+
+    Usage: java -cp src solver.ReachabilityBenchmark [mapName ...]
+    With no arguments every map in maps/ is measured.
+*/
+public class ReachabilityBenchmark {
+
+    private static final int WARMUP_ROUNDS = 200000;
+    private static final int TIMED_ROUNDS = 200000;
+
+    private static long blackhole;   // keeps the JIT from discarding the timed fills
+
+    public static void main( String[] args ) {
+        List<String> maps = new ArrayList<>(Arrays.asList(args));
+        if( maps.isEmpty() ) {
+            for( File file : new File("maps").listFiles() ) {
+                maps.add(file.getName().replace(".txt", ""));
+            }
+            Collections.sort(maps);
+        }
+
+        System.out.printf("%-14s %6s %12s %12s %8s%n", "map", "cells", "bitboard ns", "queue ns", "speedup");
+        for( String name : maps ) {
+            MapData mapData = new FileReader().readFile(name);
+            if( mapData != null ) {
+                run(name, new Board(mapData.columns, mapData.rows, mapData.tiles, mapData.tiles));
+            }
+        }
+    }
+
+    private static void run( String name, Board board ) {
+        BitBoard bitBoard = new BitBoard(board);
+        long[] boxBits = bitBoard.newSet();
+        bitBoard.boxesToBits(board.boxes, boxBits);
+
+        boolean[][] boxGrid = new boolean[board.height][board.width];
+        for( int box : board.boxes ) {
+            boxGrid[board.row(box)][board.col(box)] = true;
+        }
+
+        // - Start from every free floor square in turn so both fills see different regions
+        int[] starts = new int[board.size];
+        int startCount = 0;
+        for( int cell = 0; cell < board.size; cell++ ) {
+            if( board.floor[cell] && !BitBoard.has(boxBits, cell) ) {
+                starts[startCount++] = cell;
+            }
+        }
+
+        // - Both fills must agree before their timings mean anything
+        for( int i = 0; i < startCount; i++ ) {
+            int bits = countBits(bitBoard.reachable(starts[i], boxBits));
+            int queued = queueReach(board, boxGrid, starts[i]);
+            if( bits != queued ) {
+                System.out.printf("%-14s mismatch from cell %d: %d vs %d%n", name, starts[i], bits, queued);
+                return;
+            }
+        }
+
+        long sink = 0;
+        for( int i = 0; i < WARMUP_ROUNDS; i++ ) {
+            sink += bitBoard.reachable(starts[i % startCount], boxBits)[0];
+            sink += queueReach(board, boxGrid, starts[i % startCount]);
+        }
+
+        long begin = System.nanoTime();
+        for( int i = 0; i < TIMED_ROUNDS; i++ ) {
+            sink += bitBoard.reachable(starts[i % startCount], boxBits)[0];
+        }
+        double bitNanos = (System.nanoTime() - begin) / (double) TIMED_ROUNDS;
+
+        begin = System.nanoTime();
+        for( int i = 0; i < TIMED_ROUNDS; i++ ) {
+            sink += queueReach(board, boxGrid, starts[i % startCount]);
+        }
+        double queueNanos = (System.nanoTime() - begin) / (double) TIMED_ROUNDS;
+
+        blackhole += sink;
+        System.out.printf("%-14s %6d %12.1f %12.1f %7.1fx%n", name, board.size, bitNanos, queueNanos,
+            queueNanos / bitNanos);
+    }
+
+    /**
+        ` The reference fill: a LinkedList queue of Coordinates over a 2D grid.
+    */
+    private static int queueReach( Board board, boolean[][] boxGrid, int start ) {
+        boolean[][] visited = new boolean[board.height][board.width];
+        Queue<Coordinates> queue = new LinkedList<>();
+        queue.offer(new Coordinates(board.row(start), board.col(start)));
+        visited[board.row(start)][board.col(start)] = true;
+        int count = 1;
+
+        while( !queue.isEmpty() ) {
+            Coordinates curr = queue.poll();
+            for( int i = 0; i < 4; i++ ) {
+                Coordinates dest = new Coordinates(curr.row + Board.D_ROW[i], curr.col + Board.D_COL[i]);
+                if( board.floor[board.index(dest.row, dest.col)] && !boxGrid[dest.row][dest.col]
+                        && !visited[dest.row][dest.col] ) {
+                    visited[dest.row][dest.col] = true;
+                    queue.offer(dest);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int countBits( long[] bits ) {
+        int count = 0;
+        for( long word : bits ) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+}
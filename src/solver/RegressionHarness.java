@@ -0,0 +1,382 @@
+package solver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import reader.FileReader;
+import reader.MapData;
+
+/**
+    ` Re-solves a corpus of levels in parallel and checks every answer with a SolutionVerifier,
+    so search changes can be tried without trusting the searches to report their own success.
+    A level is flagged when its solution is illegal, does not solve it, is longer than the
+    baseline for the mode, or when a level the baseline has solved is not solved any more.
+
+    The baseline file holds one "mode level moves" line per solved level; --record rewrites the
+    lines of the current mode from this run. Once the corpus is done, every valid solution is
+    verified again in a loop to report the verifier's throughput.
+
+    Every level also gets a DifficultyEstimate, and the report ends with how well the estimates
+    rank the actual solve times. With --shortest-first the levels are started cheapest first,
+    and with --budget each level's time limit becomes that many times its estimate.
+
+    The levels share one heap, so the MemoryWatch is off unless --memory turns it on: with it,
+    one heavy level could make its neighbours hand over to a beam. A solve that shrank or
+    handed over all the same ( after running out of memory ) is reported as "handed-over",
+    which is not flagged and not recorded, whatever its length.
+
+    Usage: java -cp src solver.RegressionHarness [options] [mapName ...]
+      -m <mode>                 search mode ( default astar )
+      -t <seconds>              time limit per level ( default 60 )
+      -j <threads>              levels solved at once ( default: one per processor )
+      --bitstate <MB>           push-astar and greedy keep a bitstate closed set of this size
+      --memory <share>          heap share at which searches shrink or hand over ( default off )
+      --suite <seed> <pushes>   add the LevelGenerator suite for that seed and pushes per box
+      --baseline <file>         baseline lengths ( default regression-baseline.txt )
+      --record                  store this run's lengths as the baseline of the mode
+      --shortest-first          start the levels in order of their estimated solve time
+      --budget <factor>         limit each level to factor times its estimate ( at least 1 s )
+      --weights <file>          estimator weights ( default difficulty-weights.txt )
+      --calibrate               fit the estimator weights of the mode to this run and store them
+    With no map names every map in maps/ is solved.
+*/
+public class RegressionHarness {
+
+    private static final String DEFAULT_BASELINE = "regression-baseline.txt";
+    private static final long VERIFY_NANOS = 2000000000L;     // how long the throughput loop runs
+    private static final long MIN_BUDGET_MILLIS = 1000;
+
+    private static long blackhole;   // keeps the JIT from discarding the timed replays
+
+    /*|************************************************************
+                                Outcomes
+    ***************************************************************/
+    private static final String OK = "ok";
+    private static final String SHORTER = "shorter";      // beats the baseline, worth recording
+    private static final String UNSOLVED = "unsolved";    // no solution within the limit
+    private static final String HANDED_OVER = "handed-over";    // memory pressure changed the search
+    private static final String LONGER = "LONGER";
+    private static final String WRONG = "WRONG";          // legal, but the level is not solved
+    private static final String ILLEGAL = "ILLEGAL";
+    private static final String LOST = "LOST";            // the baseline solved it, this run did not
+
+    private static class Result {
+        String name;
+        String outcome;
+        String solution;
+        int moves;
+        int pushes;
+        int baseline;       // -1 when the baseline has no entry
+        long millis;
+        double estimate;    // predicted milliseconds
+        long finished;      // milliseconds from the start of the run until this result came in
+        String detail = "";
+    }
+
+    /*|************************************************************
+                              Main Method
+    ***************************************************************/
+    public static void main( String[] args ) throws Exception {
+        SolverConfig config = new SolverConfig();
+        config.timeLimitMillis = 60000;
+        config.printSolution = false;
+        config.memoryThreshold = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path baselinePath = Paths.get(DEFAULT_BASELINE);
+        boolean record = false;
+        boolean shortestFirst = false;
+        double budget = 0;
+        Path weightsPath = Paths.get(DifficultyEstimate.DEFAULT_FILE);
+        boolean calibrate = false;
+        long suiteSeed = 0;
+        int suitePushes = 0;
+        List<String> names = new ArrayList<>();
+
+        for( int i = 0; i < args.length; i++ ) {
+            switch( args[i] ) {
+                case "-m": config.mode = args[++i]; break;
+                case "-t": config.timeLimitMillis = (long) (Double.parseDouble(args[++i]) * 1000); break;
+                case "-j": threads = Integer.parseInt(args[++i]); break;
+                case "--bitstate": config.bitstateBytes = Long.parseLong(args[++i]) << 20; break;
+                case "--memory": config.memoryThreshold = Double.parseDouble(args[++i]); break;
+                case "--suite":
+                    suiteSeed = Long.parseLong(args[++i]);
+                    suitePushes = Integer.parseInt(args[++i]);
+                    break;
+                case "--baseline": baselinePath = Paths.get(args[++i]); break;
+                case "--record": record = true; break;
+                case "--shortest-first": shortestFirst = true; break;
+                case "--budget": budget = Double.parseDouble(args[++i]); break;
+                case "--weights": weightsPath = Paths.get(args[++i]); break;
+                case "--calibrate": calibrate = true; break;
+                default: names.add(args[i]);
+            }
+        }
+
+        // - Load everything up front, on this thread
+        Map<String, MapData> levels = new LinkedHashMap<>();
+        if( names.isEmpty() ) {
+            for( File file : new File("maps").listFiles() ) {
+                if( file.isFile() && file.getName().endsWith(".txt") ) {
+                    names.add(file.getName().replace(".txt", ""));
+                }
+            }
+            Collections.sort(names);
+        }
+        for( String name : names ) {
+            MapData mapData = new FileReader().readFile(name);
+            if( mapData != null ) {
+                levels.put(name, mapData);
+            }
+        }
+        if( suitePushes > 0 ) {
+            for( Map.Entry<String, MapData> level : new LevelGenerator(suiteSeed).suite(suitePushes).entrySet() ) {
+                levels.put("generated/s" + suiteSeed + "_" + level.getKey(), level.getValue());
+            }
+        }
+
+        Map<String, Integer> baseline = readBaseline(baselinePath, config.mode);
+        double[] weights = DifficultyEstimate.readWeights(weightsPath, config.mode);
+        Map<String, DifficultyEstimate> estimates = new HashMap<>();
+        for( Map.Entry<String, MapData> level : levels.entrySet() ) {
+            estimates.put(level.getKey(), new DifficultyEstimate(board(level.getValue())));
+        }
+
+        long start = System.nanoTime();
+        List<Result> results = solveAll(levels, baseline, config, threads, estimates, weights, shortestFirst, budget);
+        long wall = (System.nanoTime() - start) / 1000000;
+
+        // - Report in corpus order
+        System.out.printf("%-28s %-9s %7s %7s %9s %9s %9s%n", "level", "outcome", "moves", "pushes", "baseline", "ms",
+            "estimate");
+        int flagged = 0;
+        for( Result result : results ) {
+            System.out.printf("%-28s %-9s %7s %7s %9s %9d %9.0f %s%n", result.name, result.outcome,
+                result.solution == null ? "-" : String.valueOf(result.moves),
+                result.solution == null ? "-" : String.valueOf(result.pushes),
+                result.baseline < 0 ? "-" : String.valueOf(result.baseline), result.millis, result.estimate,
+                result.detail);
+            if( Character.isUpperCase(result.outcome.charAt(0)) ) {
+                flagged++;
+            }
+        }
+        System.out.printf("%d levels, %d flagged, %d ms with %d threads%n", results.size(), flagged, wall, threads);
+
+        reportRanking(results);
+        reportThroughput(levels, results);
+
+        if( calibrate ) {
+            List<double[]> samples = new ArrayList<>();
+            List<Long> millis = new ArrayList<>();
+            for( Result result : results ) {
+                samples.add(estimates.get(result.name).features);
+                millis.add(result.millis);
+            }
+            DifficultyEstimate.writeWeights(weightsPath, config.mode, DifficultyEstimate.fit(samples, millis));
+            System.out.println("estimator weights for " + config.mode + " written to " + weightsPath);
+        }
+
+        if( record ) {
+            writeBaseline(baselinePath, config.mode, results);
+            System.out.println("baseline for " + config.mode + " written to " + baselinePath);
+        }
+        System.exit(flagged == 0 ? 0 : 1);
+    }
+
+    /*|************************************************************
+                                Solving
+    ***************************************************************/
+    /**
+        ` Solves every level and returns the results in corpus order, whatever order they were
+        started in.
+    */
+    private static List<Result> solveAll( Map<String, MapData> levels, Map<String, Integer> baseline,
+                                          SolverConfig config, int threads, Map<String, DifficultyEstimate> estimates,
+                                          double[] weights, boolean shortestFirst, double budget ) throws Exception {
+        List<String> names = new ArrayList<>(levels.keySet());
+        if( shortestFirst ) {
+            names.sort((a, b) -> Double.compare(estimates.get(a).predictMillis(weights),
+                                                estimates.get(b).predictMillis(weights)));
+        }
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            Map<String, Future<Result>> futures = new HashMap<>();
+            for( String name : names ) {
+                MapData mapData = levels.get(name);
+                Integer known = baseline.get(name);
+                DifficultyEstimate estimate = estimates.get(name);
+                SolverConfig levelConfig = config;
+                if( budget > 0 ) {
+                    levelConfig = config.copy();
+                    levelConfig.timeLimitMillis = estimate.budgetMillis(weights, budget, MIN_BUDGET_MILLIS,
+                                                                        config.timeLimitMillis);
+                }
+                SolverConfig solveConfig = levelConfig;
+                futures.put(name, pool.submit(() -> {
+                    Result result = check(name, mapData, known == null ? -1 : known, solveConfig);
+                    result.estimate = estimate.predictMillis(weights);
+                    result.finished = (System.nanoTime() - start) / 1000000;
+                    return result;
+                }));
+            }
+
+            List<Result> results = new ArrayList<>();
+            for( String name : levels.keySet() ) {
+                results.add(futures.get(name).get());
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+        ` Solves one level on the calling thread and judges the answer.
+    */
+    private static Result check( String name, MapData mapData, int known, SolverConfig config ) {
+        Result result = new Result();
+        result.name = name;
+        result.baseline = known;
+
+        SokoBot sokoBot = new SokoBot();
+        try {
+            result.solution = sokoBot.solveSokobanPuzzle(mapData.columns, mapData.rows,
+                mapData.mapLayer(), mapData.itemsLayer(), config);
+        } catch( RuntimeException | StackOverflowError | OutOfMemoryError ex ) {
+            result.detail = ex.toString();
+        }
+        result.millis = sokoBot.getStats().millis;
+        List<String> triggers = sokoBot.getStats().triggers;
+        if( !triggers.isEmpty() ) {
+            result.detail = String.join("; ", triggers);
+        }
+
+        if( result.solution == null ) {
+            result.outcome = !triggers.isEmpty() ? HANDED_OVER : known >= 0 ? LOST : UNSOLVED;
+            if( sokoBot.getStats().limitReached ) {
+                result.detail = "limit reached " + result.detail;
+            }
+            return result;
+        }
+
+        SolutionVerifier verifier = new SolutionVerifier(board(mapData));
+        int verdict = verifier.verify(result.solution);
+        result.moves = verifier.moves();
+        result.pushes = verifier.pushes();
+        if( verdict == SolutionVerifier.NOT_SOLVED ) {
+            result.outcome = WRONG;
+        } else if( verdict != SolutionVerifier.VALID ) {
+            result.outcome = ILLEGAL;
+            result.detail = SolutionVerifier.describe(verdict) + " at move " + verifier.failedAt();
+        } else if( !triggers.isEmpty() ) {
+            result.outcome = HANDED_OVER;
+        } else if( known >= 0 && result.moves > known ) {
+            result.outcome = LONGER;
+        } else if( known >= 0 && result.moves < known ) {
+            result.outcome = SHORTER;
+        } else {
+            result.outcome = OK;
+        }
+        return result;
+    }
+
+    private static Board board( MapData mapData ) {
+        return new Board(mapData.columns, mapData.rows, mapData.mapLayer(), mapData.itemsLayer());
+    }
+
+    /**
+        ` Spearman correlation between the estimates and the solve times. Unsolved levels count
+        with the time they were given, which still ranks them among the slowest.
+    */
+    private static void reportRanking( List<Result> results ) {
+        double[] estimated = new double[results.size()];
+        double[] actual = new double[results.size()];
+        long waited = 0;
+        for( int i = 0; i < results.size(); i++ ) {
+            estimated[i] = results.get(i).estimate;
+            actual[i] = results.get(i).millis;
+            waited += results.get(i).finished;
+        }
+        System.out.printf("estimator: rank correlation %.2f over %d levels, mean wait for a result %d ms%n",
+            DifficultyEstimate.rankCorrelation(estimated, actual), results.size(), waited / Math.max(1, results.size()));
+    }
+
+    /**
+        ` Verifies every valid solution over and over for VERIFY_NANOS and prints the move rate.
+    */
+    private static void reportThroughput( Map<String, MapData> levels, List<Result> results ) {
+        List<SolutionVerifier> verifiers = new ArrayList<>();
+        List<String> solutions = new ArrayList<>();
+        for( Result result : results ) {
+            if( result.solution != null && !result.outcome.equals(ILLEGAL) ) {
+                verifiers.add(new SolutionVerifier(board(levels.get(result.name))));
+                solutions.add(result.solution);
+            }
+        }
+        if( solutions.isEmpty() ) {
+            return;
+        }
+
+        long moves = 0;
+        long sink = 0;
+        long begin = System.nanoTime();
+        long elapsed;
+        do {
+            for( int i = 0; i < solutions.size(); i++ ) {
+                sink += verifiers.get(i).verify(solutions.get(i));
+                moves += solutions.get(i).length();
+            }
+            elapsed = System.nanoTime() - begin;
+        } while( elapsed < VERIFY_NANOS );
+        blackhole += sink;
+        System.out.printf("verifier: %d moves in %d ms, %.1f million moves/s%n", moves, elapsed / 1000000,
+            moves * 1000.0 / elapsed);
+    }
+
+    /*|************************************************************
+                               Baseline
+    ***************************************************************/
+    private static Map<String, Integer> readBaseline( Path path, String mode ) throws IOException {
+        Map<String, Integer> baseline = new HashMap<>();
+        if( !Files.exists(path) ) {
+            return baseline;
+        }
+        for( String line : Files.readAllLines(path) ) {
+            String[] fields = line.trim().split("\\s+");
+            if( fields.length == 3 && fields[0].equals(mode) ) {
+                baseline.put(fields[1], Integer.parseInt(fields[2]));
+            }
+        }
+        return baseline;
+    }
+
+    /**
+        ` Replaces the lines of one mode with the valid solutions of this run; other modes stay.
+    */
+    private static void writeBaseline( Path path, String mode, List<Result> results ) throws IOException {
+        List<String> lines = new ArrayList<>();
+        if( Files.exists(path) ) {
+            for( String line : Files.readAllLines(path) ) {
+                if( !line.startsWith(mode + " ") ) {
+                    lines.add(line);
+                }
+            }
+        }
+        for( Result result : results ) {
+            if( result.solution != null && (result.outcome.equals(OK) || result.outcome.equals(SHORTER)
+                    || result.outcome.equals(LONGER)) ) {
+                lines.add(mode + " " + result.name + " " + result.moves);
+            }
+        }
+        Files.write(path, lines);
+    }
+}
@@ -0,0 +1,98 @@
+package solver;
+
+/**
+    ` A one-way progress channel from a running search to whoever is watching it ( the GUI ).
+    The search thread builds an immutable Snapshot at most once per interval and swaps it in
+    through a volatile field; readers just take the latest one. Neither side ever waits on the
+    other.
+*/
+public class SearchProgress {
+
+    /**
+        ` What the search looked like at one moment. Cells are given as rows and columns so the
+        reader does not need the Board.
+    */
+    public static class Snapshot {
+        public final int playerRow;
+        public final int playerCol;
+        public final int[] boxRows;
+        public final int[] boxCols;
+        public final int bestHeuristic;   // lowest heuristic seen so far; the state shown is that one
+        public final int fBound;          // priority of the node being expanded
+        public final long frontierSize;
+        public final long expanded;
+
+        Snapshot( int playerRow, int playerCol, int[] boxRows, int[] boxCols,
+                  int bestHeuristic, int fBound, long frontierSize, long expanded ) {
+            this.playerRow = playerRow;
+            this.playerCol = playerCol;
+            this.boxRows = boxRows;
+            this.boxCols = boxCols;
+            this.bestHeuristic = bestHeuristic;
+            this.fBound = fBound;
+            this.frontierSize = frontierSize;
+            this.expanded = expanded;
+        }
+    }
+
+    /*|************************************************************
+                              Attributes
+    ***************************************************************/
+    private final long intervalNanos;
+    private long nextPublish = 0;            // only touched by the search thread
+    private volatile Snapshot latest = null;
+
+    /*|************************************************************
+                          Constructor Methods
+    ***************************************************************/
+    public SearchProgress() {
+        this(50);
+    }
+
+    /**
+        @param intervalMillis   smallest time between two snapshots
+    */
+    public SearchProgress( long intervalMillis ) {
+        this.intervalNanos = intervalMillis * 1000000L;
+    }
+
+    /*|************************************************************
+                            Class Methods
+    ***************************************************************/
+    /**
+        ` Cheap check for the search loop: true when the next snapshot may be published.
+    */
+    public boolean isDue() {
+        return System.nanoTime() >= nextPublish;
+    }
+
+    /**
+        ` Publishes a snapshot of a state given as board cells.
+    */
+    public void publish( Board board, int player, int[] boxes, int bestHeuristic, int fBound,
+                         long frontierSize, long expanded ) {
+        int[] boxRows = new int[boxes.length];
+        int[] boxCols = new int[boxes.length];
+        for( int i = 0; i < boxes.length; i++ ) {
+            boxRows[i] = board.row(boxes[i]);
+            boxCols[i] = board.col(boxes[i]);
+        }
+        publish(board.row(player), board.col(player), boxRows, boxCols, bestHeuristic, fBound, frontierSize, expanded);
+    }
+
+    /**
+        ` Publishes a snapshot of a state given as rows and columns.
+    */
+    public void publish( int playerRow, int playerCol, int[] boxRows, int[] boxCols, int bestHeuristic,
+                         int fBound, long frontierSize, long expanded ) {
+        latest = new Snapshot(playerRow, playerCol, boxRows, boxCols, bestHeuristic, fBound, frontierSize, expanded);
+        nextPublish = System.nanoTime() + intervalNanos;
+    }
+
+    /**
+        ` Returns the newest snapshot, or null if none was published yet. Safe from any thread.
+    */
+    public Snapshot latest() {
+        return latest;
+    }
+}
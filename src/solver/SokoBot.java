@@ -3,6 +3,15 @@ import java.util.*;
 
 public class SokoBot {
 
+    private Board board;
+    private PackingOrder packing;   // goal room filling order, null when not in use
+    private SolveStats stats = new SolveStats();
+    private SearchProgress progress;   // from the config, null when nobody is watching
+    private HeuristicCache heuristicCache;   // box part of the heuristic per box configuration, null when off
+    private boolean inertia;           // try the direction of the last move first
+    private MemoryWatch watch;         // hands the search over to a beam when the heap fills up
+    private boolean memoryPressed;
+
     /*|************************************************************
                               Main Method
     ***************************************************************/
@@ -10,35 +19,175 @@ public class SokoBot {
         ` Solves a Sokoban puzzle using an A* heuristics algorithm. 
     */
 	public String solveSokobanPuzzle( int width, int height, char[][] mapData, char[][] itemsData ) {
-        State state = new State( width, height, mapData, itemsData );   
-        state.detectSimpleDeadlock();      
-        String solutionString = A_Star(state);
-        System.out.printf( solutionString );
+        return solveSokobanPuzzle( width, height, mapData, itemsData, new SolverConfig() );
+	}
+
+    /**
+        ` Solves a Sokoban puzzle with the search selected in the config.
+    */
+	public String solveSokobanPuzzle( int width, int height, char[][] mapData, char[][] itemsData, SolverConfig config ) {
+        return solve( width, height, mapData, itemsData, config, false );
+	}
+
+    /**
+        ` Solves a Sokoban puzzle, carrying on from config.checkpointFile when a push-level search
+        left one behind. The other modes do not checkpoint and simply start over.
+    */
+	public String resumeSokobanPuzzle( int width, int height, char[][] mapData, char[][] itemsData, SolverConfig config ) {
+        return solve( width, height, mapData, itemsData, config, true );
+	}
+
+	private String solve( int width, int height, char[][] mapData, char[][] itemsData, SolverConfig config, boolean resume ) {
+        long startTime = System.nanoTime();
+        stats = new SolveStats();
+        stats.mode = config.mode;
+        stats.startClock(config);
+        progress = config.progress;
+        inertia = config.inertia;
+        watch = new MemoryWatch(config.memoryThreshold);
+        memoryPressed = false;
+        board = new Board( width, height, mapData, itemsData );
+        if( SolverConfig.MODE_TUNED.equals(config.mode) ) {
+            config = Autotuner.tunedConfig(board, config);
+            stats.mode = SolverConfig.MODE_TUNED + " -> " + config.mode;
+            inertia = config.inertia;
+        }
+        // - Not for the move-level A* ( the default branch below ), which keeps Manhattan distances
+        boolean aStar = SolverConfig.MODE_ASTAR.equals(config.mode) || !Arrays.asList(SolverConfig.MODES).contains(config.mode);
+        if( config.walkTableBytes > 0 && !aStar ) {
+            long tableStart = System.nanoTime();
+            board.walks = new WalkTable(board, config.walkTableBytes);
+            stats.walkTableMillis = (System.nanoTime() - tableStart) / 1000000;
+        }
+        String solutionString;
+
+        switch( config.mode ) {
+            case SolverConfig.MODE_PUSH_ASTAR:
+            case SolverConfig.MODE_GREEDY:
+                PushSearch search = new PushSearch(board, config, stats);
+                solutionString = resume ? search.resume() : search.solve();
+                break;
+            case SolverConfig.MODE_EXTERNAL_BFS:
+            case SolverConfig.MODE_EXTERNAL_ASTAR:
+                solutionString = new ExternalSearch(board, config, stats).solve();
+                break;
+            case SolverConfig.MODE_DISTRIBUTED:
+                solutionString = new DistributedSearch(board, config, stats).solve();
+                break;
+            case SolverConfig.MODE_BEAM:
+                solutionString = new BeamSearch(board, config, stats).solve();
+                break;
+            case SolverConfig.MODE_DECOMPOSE:
+                solutionString = new DecompositionSearch(board, config, stats).solve();
+                break;
+            case SolverConfig.MODE_OPTIMAL_MOVES:
+            case SolverConfig.MODE_OPTIMAL_PUSHES:
+                boolean countMoves = config.mode.equals(SolverConfig.MODE_OPTIMAL_MOVES);
+                solutionString = new OptimalSearch(board, config, stats, countMoves).solve();
+                break;
+            default:
+                solutionString = solveWithAStar(width, height, mapData, itemsData, config);
+        }
+
+        // - Shorten the replay: rebuild walks as shortest paths, drop loops, reorder nearby pushes
+        solutionString = new SolutionOptimizer(board).optimize(solutionString);
+
+        stats.millis = (System.nanoTime() - startTime) / 1000000;
+        if( board.walks != null ) {
+            stats.recordWalkTable(board.walks);
+        }
+        stats.solved = solutionString != null;
+        stats.solutionLength = solutionString == null ? 0 : solutionString.length();
+        if( solutionString != null && config.printSolution ) {
+            System.out.print( solutionString );
+        }
         return solutionString;  
 	}
 
+    /**
+        ` Returns the statistics of the last solve.
+    */
+    public SolveStats getStats() {
+        return stats;
+    }
+
+    private String solveWithAStar( int width, int height, char[][] mapData, char[][] itemsData, SolverConfig config ) {
+        State state = new State( width, height, mapData, itemsData );   
+        state.detectSimpleDeadlock();      
+
+        // - Work out at load time in which order the goal room can be packed
+        packing = new PackingOrder(board);
+        if( !packing.isAvailable() ) {
+            packing = null;
+        }
+
+        heuristicCache = config.heuristicCacheSlots > 0 ? new HeuristicCache(board, config.heuristicCacheSlots) : null;
+        String solutionString = runAStar(state);
+
+        // - The packing order only prunes; if it ruled out every solution, search again without it
+        //   ( the cached values were computed with it, so the cache starts over too )
+        if( solutionString == null && packing != null && !stats.limitReached && !memoryPressed ) {
+            packing = null;
+            heuristicCache = config.heuristicCacheSlots > 0 ? new HeuristicCache(board, config.heuristicCacheSlots) : null;
+            solutionString = runAStar(state);
+        }
+        if( heuristicCache != null ) {
+            stats.recordHeuristicCache(heuristicCache);
+        }
+
+        // - Out of memory: the queue and visited set are gone with A_Star's frame, so a beam fits
+        if( memoryPressed ) {
+            stats.mode = config.mode + " -> " + SolverConfig.MODE_BEAM;
+            solutionString = new BeamSearch(board, config, stats).solve();
+        }
+        return solutionString;
+    }
+
     /*|************************************************************
                            A* Search Algorithm
     ***************************************************************/
+    /**
+        ` Runs A_Star, treating a table that no longer fits in the heap like memory pressure.
+    */
+    private String runAStar( State state ) {
+        try {
+            return A_Star(state);
+        } catch( OutOfMemoryError ex ) {
+            stats.triggers.add(String.format("out of memory at %d expanded: %s -> %s",
+                stats.expanded, stats.mode, SolverConfig.MODE_BEAM));
+            memoryPressed = true;
+            return null;
+        }
+    }
+
     /**
         ` Performs the A* search algorithm to find the solution to the Sokoban game
     */
 	private String A_Star( State state ) {
 
         // - PriorityQueue with custom Comparator for Nodes
-        // The overriden compare method arranges the nodes via the lowest priority
+        // The overriden compare method arranges the nodes via the lowest priority; ties go to the
+        // node closer to the goal, and then to the one generated first
         PriorityQueue<Node> pQueue = new PriorityQueue<>(
             new Comparator<Node>() {  
                 @Override public int compare( Node n1, Node n2 ) {
-                    return Integer.compare( n1.prio, n2.prio );
+                    if( n1.prio != n2.prio ) {
+                        return Integer.compare( n1.prio, n2.prio );
+                    }
+                    if( n1.heuristic != n2.heuristic ) {
+                        return Integer.compare( n1.heuristic, n2.heuristic );
+                    }
+                    return Integer.compare( n1.order, n2.order );
                 }
             }
         );
+        int order = 0;
 
         // - Create a set to store visited states
         Set<State> visited = new HashSet<>();    
         Node initial = new Node(state, 0, calcManhattanDist(state), null); 
         pQueue.add(initial);
+        Node best = initial;    // lowest heuristic so far, shown by the progress snapshots
 
         // - Similar to detecting deadlock, PriorityQueue will keep exploring all possible states
         while( !pQueue.isEmpty() ) {          
@@ -56,9 +205,26 @@ public class SokoBot {
             }
 
             visited.add(currState);
+            stats.expanded++;
+            if( stats.overLimit() ) {
+                return null;
+            }
+            if( watch.tick() ) {
+                stats.triggers.add(String.format("%d expanded at %.0f%% heap: %s -> %s",
+                    stats.expanded, 100 * watch.lastShare(), stats.mode, SolverConfig.MODE_BEAM));
+                memoryPressed = true;
+                return null;
+            }
+
+            if( currNode.heuristic < best.heuristic ) {
+                best = currNode;
+            }
+            if( progress != null && progress.isDue() ) {
+                publishProgress(best, currNode.prio, pQueue.size(), stats.expanded);
+            }
 
             // - Generate successor states and explore the nodes
-            for( State successor : generateSState(currState, visited) ) {        
+            for( State successor : generateSState(currState, visited, lastDirection(currNode)) ) {        
                 if( successor.is_in(visited) ) {
                     continue;
                 }                                   
@@ -69,18 +235,52 @@ public class SokoBot {
                             
                 // - Create the successor node and add it to the priority queue.
                 Node sNode = new Node(successor, succCost, succHeuristic, currNode);   
+                sNode.order = ++order;
                 pQueue.add(sNode);          // add to priority queue to loop
+                stats.generated++;
                 visited.add(successor);     // add successor state to visited; already explored in generateSState()
             }
         }
         return null;
 	}
 
+    /**
+        ` Hands a snapshot of the best node so far to the progress channel.
+    */
+    private void publishProgress( Node best, int fBound, long frontierSize, long expanded ) {
+        State state = best.state;
+        int[] boxRows = new int[state.boxCoords.size()];
+        int[] boxCols = new int[state.boxCoords.size()];
+        for( int i = 0; i < boxRows.length; i++ ) {
+            boxRows[i] = state.boxCoords.get(i).row;
+            boxCols[i] = state.boxCoords.get(i).col;
+        }
+        progress.publish(state.player.row, state.player.col, boxRows, boxCols, best.heuristic, fBound, frontierSize, expanded);
+    }
+
+    /**
+        ` Returns the direction of the move that led to a node, or -1 for the first node.
+    */
+    private int lastDirection( Node node ) {
+        if( !inertia || node.parent == null ) {
+            return -1;
+        }
+        Coordinates from = node.parent.state.player;
+        Coordinates to = node.state.player;
+        for( int i = 0; i < 4; i++ ) {
+            if( to.row - from.row == Board.D_ROW[i] && to.col - from.col == Board.D_COL[i] ) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     /**
         ` Generates successor states by simulating player movements in four possible 
-        directions and checks their validity.
+        directions and checks their validity. With inertia the last move's direction goes first,
+        so among equally good successors the player keeps going ( and keeps pushing ) the same way.
     */
-	private List<State> generateSState( State currState, Set<State> visited ) {
+	private List<State> generateSState( State currState, Set<State> visited, int lastDir ) {
         List<State> succStates = new ArrayList<>();   // list of states to be generated
         Coordinates player = currState.player;
 
@@ -88,7 +288,8 @@ public class SokoBot {
         int[] dCol = { 0, 0, -1, 1 };
 
         // - Iterate through the four possible directions (up, down, left, right)
-        for( int i = 0; i < 4; i++ ) {
+        for( int k = 0; k < 4; k++ ) {
+            int i = lastDir < 0 ? k : (k == 0 ? lastDir : (k <= lastDir ? k - 1 : k));
             Coordinates dest = new Coordinates(player.row + dRow[i], player.col + dCol[i]);
 
             // - Check if the destination is a valid move based on the current state and direction.
@@ -96,7 +297,7 @@ public class SokoBot {
                 State nextState = new State(currState);  
 
                 // - If the move is valid, move the player and add it to the list of successor states
-                if( nextState.movePlayer(dest, i) ) {      
+                if( nextState.movePlayer(dest, i) && !breaksPackingOrder(currState, nextState, dest, i) ) {      
                     succStates.add(nextState);      
                 }
             }
@@ -163,7 +364,47 @@ public class SokoBot {
         goals and the player to the boxes. 
     */
 	private int calcManhattanDist( State state ) {
+        int totalDistance = boxDistance(state);
+        if( totalDistance == Integer.MAX_VALUE ) {
+            return totalDistance;
+        }
+
+        for( Coordinates box : state.boxCoords ) {
+            // - Calculate the Manhattan Distance between the player and the current box.
+            int playerBoxDistance = Math.abs(state.player.row - box.row) + Math.abs(state.player.col - box.col);
+            totalDistance += playerBoxDistance;
+        }
+        return totalDistance;
+	}
+
+    /**
+        ` The part of the heuristic that only depends on where the boxes are: each box's Manhattan
+        Distance to its nearest goal. It is looked up in the heuristic cache first, since many
+        states share a box configuration and only differ in the player.
+    */
+    private int boxDistance( State state ) {
+        long key = 0;
+        if( heuristicCache != null ) {
+            for( Coordinates box : state.boxCoords ) {
+                key ^= heuristicCache.cellKey(board.index(box.row, box.col));
+            }
+            int cached = heuristicCache.get(key);
+            if( cached != HeuristicCache.MISSING ) {
+                return cached;
+            }
+        }
+
+        int totalDistance = computeBoxDistance(state);
+        if( heuristicCache != null ) {
+            heuristicCache.put(key, totalDistance);
+        }
+        return totalDistance;
+    }
+
+    private int computeBoxDistance( State state ) {
         int totalDistance = 0;
+        int openRank = packing != null ? packing.lowestOpenRank(boxCells(state)) : 0;
+
         for( Coordinates box : state.boxCoords ) {
             int minDistance = Integer.MAX_VALUE;    //set minDistance to max possible value of int
             
@@ -172,7 +413,13 @@ public class SokoBot {
                 return minDistance;                   
             }
 
+            Boolean onGoal = box.is_in(state.goalCoords);
             for( Coordinates goal : state.goalCoords ) {
+                // - With a packing order, boxes still travelling aim only at the goals open for filling
+                if( packing != null && !onGoal && packing.rank[board.index(goal.row, goal.col)] != openRank ) {
+                    continue;
+                }
+
                 // - Calculate the Manhattan Distance between the current box and each goal position.
                 int distance = Math.abs(box.row - goal.row) + Math.abs(box.col - goal.col);     
 
@@ -181,14 +428,10 @@ public class SokoBot {
                 }         
             }
 
-            // - Calculate the Manhattan Distance between the player and the current box.
-            int playerBoxDistance = Math.abs(state.player.row - box.row) + Math.abs(state.player.col - box.col);
-            
-            // - Add the box's Manhattan Distance and the player-to-box Manhattan Distance to the total.
-            totalDistance += minDistance + playerBoxDistance;
+            totalDistance += minDistance;
         }
         return totalDistance;
-	}
+    }
 
     /**
         ` Checks if a given destination is a valid move for the player within the current state.
@@ -229,6 +472,42 @@ public class SokoBot {
         return true;
     }
 
+    /**
+        ` Checks if a move pushed a box onto a goal of the goal room while goals that have to be
+        filled earlier are still empty. A box that can keep rolling deeper into the room is let
+        through, since it is only passing over that goal.
+    */
+    private Boolean breaksPackingOrder( State currState, State nextState, Coordinates dest, int direction ) {
+        if( packing == null || !dest.is_in(currState.boxCoords) ) {
+            return false;
+        }
+
+        int target = board.index(dest.row + Board.D_ROW[direction], dest.col + Board.D_COL[direction]);
+        if( !board.goal[target] ) {
+            return false;
+        }
+
+        boolean[] boxAt = boxCells(nextState);
+        if( packing.isFillable(target, boxAt) ) {
+            return false;
+        }
+
+        int beyond = target + board.offset[direction];
+        Boolean passingThrough = board.isFloor(beyond) && board.goal[beyond] && !boxAt[beyond];
+        return !passingThrough;
+    }
+
+    /**
+        ` Marks the board cells holding a box in the given state.
+    */
+    private boolean[] boxCells( State state ) {
+        boolean[] boxAt = new boolean[board.size];
+        for( Coordinates box : state.boxCoords ) {
+            boxAt[board.index(box.row, box.col)] = true;
+        }
+        return boxAt;
+    }
+
 	private void printDetails( State state ){     
         System.out.println("Box Coordinates:");
         state.printListCoords(state.boxCoords);
@@ -0,0 +1,495 @@
+package solver;
+
+import java.util.*;
+
+/**
+    ` Post-processes a solution string to cut down its move count without running another
+    search. The solution is reduced to its pushes, loops that come back to an earlier box
+    configuration are cut out, nearby push segments are reordered when that shortens the
+    walking in between, and finally every walk is rebuilt as a shortest path.
+*/
+public class SolutionOptimizer {
+
+    /*|************************************************************
+                              Attributes
+    ***************************************************************/
+    private static final int DEFAULT_WINDOW = 4;
+    private static final int MAX_PASSES = 3;
+
+    private Board board;
+    private int window;          // how many segments ahead a segment may be pulled forward
+    private long[] zobrist;      // random key per cell, used to hash box configurations
+
+    // - Scratch buffers for the walking BFS; `stamp` avoids clearing `mark` between searches
+    private int[] queue;
+    private int[] prevDir;
+    private int[] mark;
+    private int stamp = 0;
+
+    /*|************************************************************
+                          Constructor Methods
+    ***************************************************************/
+    public SolutionOptimizer( Board board ) {
+        this(board, DEFAULT_WINDOW);
+    }
+
+    /**
+        @param board    the level the solutions belong to
+        @param window   how many push segments ahead are considered when reordering
+    */
+    public SolutionOptimizer( Board board, int window ) {
+        this.board = board;
+        this.window = window;
+        this.queue = new int[board.size];
+        this.prevDir = new int[board.size];
+        this.mark = new int[board.size];
+
+        Random random = new Random(board.size);
+        this.zobrist = new long[board.size];
+        for( int i = 0; i < board.size; i++ ) {
+            zobrist[i] = random.nextLong();
+        }
+    }
+
+    /*|************************************************************
+                              Main Method
+    ***************************************************************/
+    /**
+        ` Returns a solution that is never longer than the given one. If the input is not a
+        valid solution for the board, it is returned untouched.
+    */
+    public String optimize( String solution ) {
+        if( solution == null ) {
+            return null;
+        }
+
+        int[] pushes = extractPushes(solution);
+        if( pushes == null ) {
+            return solution;
+        }
+
+        pushes = removeLoops(pushes);
+        for( int pass = 0; pass < MAX_PASSES; pass++ ) {
+            if( !reorderSegments(pushes) ) {
+                break;
+            }
+            pushes = removeLoops(pushes);
+        }
+
+        String optimized = buildSolution(pushes);
+        if( optimized == null || optimized.length() > solution.length() || !isSolution(optimized) ) {
+            return solution;
+        }
+        return optimized;
+    }
+
+    /*|************************************************************
+                            Push Extraction
+    ***************************************************************/
+    /**
+        ` Replays the solution and records each push as ( box cell * 4 + direction ), where the
+        box cell is the square the box stood on before the push. Returns null on an illegal move.
+    */
+    private int[] extractPushes( String solution ) {
+        boolean[] boxAt = initialBoxes();
+        int player = board.player;
+        int[] pushes = new int[solution.length()];
+        int count = 0;
+
+        for( int i = 0; i < solution.length(); i++ ) {
+            int dir = Board.direction(solution.charAt(i));
+            if( dir < 0 ) {
+                continue;
+            }
+
+            int next = player + board.offset[dir];
+            if( !board.isFloor(next) ) {
+                return null;
+            }
+
+            if( boxAt[next] ) {
+                int beyond = next + board.offset[dir];
+                if( !board.isFloor(beyond) || boxAt[beyond] ) {
+                    return null;
+                }
+                boxAt[next] = false;
+                boxAt[beyond] = true;
+                pushes[count++] = next * 4 + dir;
+            }
+            player = next;
+        }
+        return Arrays.copyOf(pushes, count);
+    }
+
+    /*|************************************************************
+                             Loop Removal
+    ***************************************************************/
+    /**
+        ` Cuts out every stretch of pushes that ends in the same box configuration and player
+        region it started from. Walks are rebuilt later, so only the region matters.
+    */
+    private int[] removeLoops( int[] pushes ) {
+        boolean[] boxAt = initialBoxes();
+        long hash = 0;
+        for( int box : board.boxes ) {
+            hash ^= zobrist[box];
+        }
+
+        Map<Long, Integer> seen = new HashMap<>();
+        long[] keys = new long[pushes.length + 1];
+        int[] kept = new int[pushes.length];
+        int count = 0;
+
+        keys[0] = stateKey(hash, canonicalCell(boxAt, board.player));
+        seen.put(keys[0], 0);
+
+        for( int push : pushes ) {
+            int box = push >> 2;
+            int beyond = box + board.offset[push & 3];
+
+            boxAt[box] = false;
+            boxAt[beyond] = true;
+            hash ^= zobrist[box] ^ zobrist[beyond];
+
+            long key = stateKey(hash, canonicalCell(boxAt, box));
+            Integer earlier = seen.get(key);
+
+            if( earlier != null ) {
+                // - Drop the loop; the board is already back in the state recorded at `earlier`
+                for( int i = earlier + 1; i <= count; i++ ) {
+                    seen.remove(keys[i]);
+                }
+                count = earlier;
+            } else {
+                kept[count++] = push;
+                keys[count] = key;
+                seen.put(key, count);
+            }
+        }
+        return Arrays.copyOf(kept, count);
+    }
+
+    private long stateKey( long boxHash, int regionCell ) {
+        return boxHash ^ (regionCell + 1) * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+        ` Returns the lowest cell reachable by the player, which identifies the player's region.
+    */
+    private int canonicalCell( boolean[] boxAt, int player ) {
+        stamp++;
+        int head = 0, tail = 0, lowest = player;
+        queue[tail++] = player;
+        mark[player] = stamp;
+
+        while( head < tail ) {
+            int curr = queue[head++];
+            if( curr < lowest ) {
+                lowest = curr;
+            }
+            for( int i = 0; i < 4; i++ ) {
+                int next = curr + board.offset[i];
+                if( board.isFloor(next) && !boxAt[next] && mark[next] != stamp ) {
+                    mark[next] = stamp;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return lowest;
+    }
+
+    /*|************************************************************
+                           Segment Reordering
+    ***************************************************************/
+    /**
+        ` Splits the pushes into segments ( consecutive pushes of the same box ) and tries to
+        pull each later segment within the window in front of the current one. A change is
+        kept only when it is legal and shortens the moves spent on that stretch.
+
+        @return true if any segment was moved
+    */
+    private boolean reorderSegments( int[] pushes ) {
+        boolean improved = false;
+        boolean[] boxAt = initialBoxes();
+        int player = board.player;
+        int pos = 0;
+
+        while( pos < pushes.length ) {
+            int[] starts = segmentStarts(pushes);
+            int i = segmentOf(starts, pos);
+            int segments = starts.length - 1;
+
+            for( int j = i + 1; j < segments && j <= i + window; j++ ) {
+                int to = starts[j + 1];
+                int[] candidate = new int[to - pos];
+
+                // - Segment j first, then everything from the current position up to it
+                int length = starts[j + 1] - starts[j];
+                System.arraycopy(pushes, starts[j], candidate, 0, length);
+                System.arraycopy(pushes, pos, candidate, length, starts[j] - pos);
+
+                int next = to < pushes.length ? pushes[to] : -1;
+                int before = rangeCost(boxAt, player, pushes, pos, to, next);
+                int after = rangeCost(boxAt, player, candidate, 0, candidate.length, next);
+
+                if( after >= 0 && after < before ) {
+                    System.arraycopy(candidate, 0, pushes, pos, candidate.length);
+                    starts = segmentStarts(pushes);
+                    i = segmentOf(starts, pos);
+                    improved = true;
+                    break;
+                }
+            }
+
+            // - Advance the running board to the end of the current segment
+            for( ; pos < starts[i + 1]; pos++ ) {
+                int box = pushes[pos] >> 2;
+                boxAt[box] = false;
+                boxAt[box + board.offset[pushes[pos] & 3]] = true;
+                player = box;
+            }
+        }
+        return improved;
+    }
+
+    /**
+        ` Returns the segment that contains the push at the given position.
+    */
+    private int segmentOf( int[] starts, int pos ) {
+        int i = Arrays.binarySearch(starts, pos);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    /**
+        ` Returns the index of the first push of each segment, followed by pushes.length.
+    */
+    private int[] segmentStarts( int[] pushes ) {
+        int[] starts = new int[pushes.length + 1];
+        int count = 0;
+
+        for( int k = 0; k < pushes.length; k++ ) {
+            boolean sameBox = k > 0 && (pushes[k] >> 2) == (pushes[k - 1] >> 2) + board.offset[pushes[k - 1] & 3];
+            if( !sameBox ) {
+                starts[count++] = k;
+            }
+        }
+        starts[count++] = pushes.length;
+        return Arrays.copyOf(starts, count);
+    }
+
+    /**
+        ` Counts the moves needed to play pushes[from .. to) from the given board, plus the walk
+        to the push that follows. Returns -1 if the sequence cannot be played.
+    */
+    private int rangeCost( boolean[] boxAt, int player, int[] pushes, int from, int to, int nextPush ) {
+        boolean[] boxes = boxAt.clone();
+        int total = 0;
+
+        for( int k = from; k < to; k++ ) {
+            int steps = playPush(boxes, player, pushes[k], null);
+            if( steps < 0 ) {
+                return -1;
+            }
+            total += steps;
+            player = pushes[k] >> 2;
+        }
+
+        if( nextPush >= 0 ) {
+            int steps = playPush(boxes, player, nextPush, null);
+            if( steps < 0 ) {
+                return -1;
+            }
+            total += steps;
+        }
+        return total;
+    }
+
+    /*|************************************************************
+                           Solution Rebuilding
+    ***************************************************************/
+    /**
+        ` Turns a list of pushes into a move string, walking the player to each push along a
+        shortest path. Returns null if a push cannot be played. Push-level searches use this to
+        produce their solutions.
+    */
+    protected String buildSolution( int[] pushes ) {
+        boolean[] boxAt = initialBoxes();
+        StringBuilder solution = new StringBuilder();
+        int player = board.player;
+
+        for( int push : pushes ) {
+            if( playPush(boxAt, player, push, solution) < 0 ) {
+                return null;
+            }
+            player = push >> 2;
+        }
+        return solution.toString();
+    }
+
+    /**
+        ` Walks the player behind the box along a shortest path and performs the push, updating
+        boxAt. Returns the number of moves used ( walk + 1 ) or -1 if the push is impossible.
+    */
+    private int playPush( boolean[] boxAt, int player, int push, StringBuilder out ) {
+        int box = push >> 2;
+        int dir = push & 3;
+        int behind = box - board.offset[dir];
+        int beyond = box + board.offset[dir];
+
+        if( !boxAt[box] || !board.isFloor(beyond) || boxAt[beyond] ) {
+            return -1;
+        }
+
+        int steps = walk(boxAt, player, behind, out);
+        if( steps < 0 ) {
+            return -1;
+        }
+
+        boxAt[box] = false;
+        boxAt[beyond] = true;
+        if( out != null ) {
+            out.append(Board.MOVES[dir]);
+        }
+        return steps + 1;
+    }
+
+    /**
+        ` Finds a shortest walk between two cells around the boxes. The moves are appended to
+        `out` when it is not null. Returns the walk length or -1 if unreachable.
+    */
+    private int walk( boolean[] boxAt, int from, int to, StringBuilder out ) {
+        if( from == to ) {
+            return 0;
+        }
+        if( !board.isFloor(to) || boxAt[to] ) {
+            return -1;
+        }
+        if( board.walks != null ) {
+            int steps = followTable(boxAt, from, to, out);
+            if( steps >= 0 ) {
+                return steps;
+            }
+        }
+        return searchWalk(boxAt, from, to, out);
+    }
+
+    /**
+        ` Walks down the WalkTable: every step is one closer to `to` with the boxes ignored, so a
+        walk that gets through is a shortest one with the boxes in place too. Returns -1, with
+        `out` as it was, when boxes stand on the way.
+    */
+    private int followTable( boolean[] boxAt, int from, int to, StringBuilder out ) {
+        int start = out == null ? 0 : out.length();
+        int length = 0;
+        for( int cell = from; cell != to; length++ ) {
+            int dir = board.walks.stepToward(cell, to, boxAt);
+            if( dir < 0 ) {
+                if( out != null ) {
+                    out.setLength(start);
+                }
+                return -1;
+            }
+            if( out != null ) {
+                out.append(Board.MOVES[dir]);
+            }
+            cell += board.offset[dir];
+        }
+        return length;
+    }
+
+    /**
+        ` Finds a shortest walk with a BFS around the boxes.
+    */
+    private int searchWalk( boolean[] boxAt, int from, int to, StringBuilder out ) {
+
+        stamp++;
+        int head = 0, tail = 0;
+        queue[tail++] = from;
+        mark[from] = stamp;
+
+        while( head < tail ) {
+            int curr = queue[head++];
+            for( int i = 0; i < 4; i++ ) {
+                int next = curr + board.offset[i];
+                if( board.isFloor(next) && !boxAt[next] && mark[next] != stamp ) {
+                    mark[next] = stamp;
+                    prevDir[next] = i;
+                    if( next == to ) {
+                        return tracePath(from, to, out);
+                    }
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private int tracePath( int from, int to, StringBuilder out ) {
+        int length = 0;
+        int start = out == null ? 0 : out.length();
+
+        for( int cell = to; cell != from; cell -= board.offset[prevDir[cell]] ) {
+            if( out != null ) {
+                out.append(Board.MOVES[prevDir[cell]]);
+            }
+            length++;
+        }
+
+        // - The path was traced from the end, so flip the appended part
+        if( out != null ) {
+            for( int i = start, j = out.length() - 1; i < j; i++, j-- ) {
+                char temp = out.charAt(i);
+                out.setCharAt(i, out.charAt(j));
+                out.setCharAt(j, temp);
+            }
+        }
+        return length;
+    }
+
+    /*|************************************************************
+                             Validation
+    ***************************************************************/
+    /**
+        ` Replays a move string and checks that it is legal and ends with every goal covered.
+    */
+    private boolean isSolution( String solution ) {
+        boolean[] boxAt = initialBoxes();
+        int player = board.player;
+
+        for( int i = 0; i < solution.length(); i++ ) {
+            int dir = Board.direction(solution.charAt(i));
+            if( dir < 0 ) {
+                return false;
+            }
+            int next = player + board.offset[dir];
+            if( !board.isFloor(next) ) {
+                return false;
+            }
+
+            if( boxAt[next] ) {
+                int beyond = next + board.offset[dir];
+                if( !board.isFloor(beyond) || boxAt[beyond] ) {
+                    return false;
+                }
+                boxAt[next] = false;
+                boxAt[beyond] = true;
+            }
+            player = next;
+        }
+
+        for( int goal : board.goals ) {
+            if( !boxAt[goal] ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean[] initialBoxes() {
+        boolean[] boxAt = new boolean[board.size];
+        for( int box : board.boxes ) {
+            boxAt[box] = true;
+        }
+        return boxAt;
+    }
+}
@@ -0,0 +1,176 @@
+package solver;
+
+/**
+    ` Replays move strings on a packed copy of a board and reports whether each one is a legal
+    solution. The board is one byte per cell ( FLOOR, GOAL and BOX bits ) inside a ring of wall
+    cells, so no move can step off the array, and it is reset from a template before every
+    replay. The number of boxes still off a goal is kept as the moves are applied, so checking
+    the final position costs nothing, and no call allocates.
+
+    A verifier holds the position of its current replay, so each thread needs its own.
+*/
+public class SolutionVerifier {
+
+    /*|************************************************************
+                                Results
+    ***************************************************************/
+    public static final int VALID = 0;
+    public static final int ILLEGAL_CHARACTER = 1;     // not one of u, d, l, r in either case
+    public static final int BLOCKED = 2;               // walks into a wall
+    public static final int BOX_BLOCKED = 3;           // pushes a box into a wall or another box
+    public static final int WRONG_CASE = 4;            // upper case without a push, or lower case with one
+    public static final int NOT_SOLVED = 5;            // legal, but boxes are left off their goals
+
+    private static final String[] DESCRIPTIONS = {
+        "valid", "illegal character", "walks into a wall", "pushes a box into a wall or box",
+        "push case does not match", "ends with boxes off goals" };
+
+    private static final byte FLOOR = 1;
+    private static final byte GOAL = 2;
+    private static final byte BOX = 4;
+
+    /*|************************************************************
+                              Attributes
+    ***************************************************************/
+    private final byte[] template;      // the start position, padded by one wall cell on each side
+    private final byte[] cells;         // the position being replayed
+    private final int[] offset;
+    private final int startPlayer;
+    private final int startOffGoal;
+    private final boolean checkCase;
+
+    // - Result of the last replay
+    private int failedAt = -1;
+    private int moves = 0;
+    private int pushes = 0;
+
+    /*|************************************************************
+                          Constructor Methods
+    ***************************************************************/
+    public SolutionVerifier( Board board ) {
+        this(board, false);
+    }
+
+    /**
+        @param checkCase    also require pushes in upper case and walks in lower case, as the
+                            standard solution notation writes them
+    */
+    public SolutionVerifier( Board board, boolean checkCase ) {
+        this.checkCase = checkCase;
+        int width = board.width + 2;
+        this.template = new byte[width * (board.height + 2)];
+        this.cells = new byte[template.length];
+        this.offset = new int[] { -width, width, -1, 1 };
+
+        for( int cell = 0; cell < board.size; cell++ ) {
+            template[padded(board, cell)] = (byte) ((board.floor[cell] ? FLOOR : 0) | (board.goal[cell] ? GOAL : 0));
+        }
+        int offGoal = 0;
+        for( int box : board.boxes ) {
+            template[padded(board, box)] |= BOX;
+            offGoal += board.goal[box] ? 0 : 1;
+        }
+        this.startOffGoal = offGoal;
+        this.startPlayer = padded(board, board.player);
+    }
+
+    private static int padded( Board board, int cell ) {
+        return (board.row(cell) + 1) * (board.width + 2) + board.col(cell) + 1;
+    }
+
+    /*|************************************************************
+                              Main Method
+    ***************************************************************/
+    /**
+        ` Replays the moves from the start of the level and returns VALID or the first problem.
+        Any other result leaves the index of the offending move in failedAt().
+    */
+    public int verify( CharSequence solution ) {
+        byte[] cells = this.cells;
+        System.arraycopy(template, 0, cells, 0, cells.length);
+        int player = startPlayer;
+        int offGoal = startOffGoal;
+        int pushCount = 0;
+        int length = solution.length();
+        moves = 0;
+        failedAt = -1;
+
+        for( int i = 0; i < length; i++ ) {
+            char move = solution.charAt(i);
+            int dir;
+            boolean upper = Character.isUpperCase(move);
+            switch( Character.toLowerCase(move) ) {
+                case 'u': dir = 0; break;
+                case 'd': dir = 1; break;
+                case 'l': dir = 2; break;
+                case 'r': dir = 3; break;
+                default:
+                    return fail(ILLEGAL_CHARACTER, i, pushCount);
+            }
+
+            int next = player + offset[dir];
+            byte target = cells[next];
+            if( (target & FLOOR) == 0 ) {
+                return fail(BLOCKED, i, pushCount);
+            }
+
+            if( (target & BOX) != 0 ) {
+                int beyond = next + offset[dir];
+                byte landing = cells[beyond];
+                if( (landing & (FLOOR | BOX)) != FLOOR ) {
+                    return fail(BOX_BLOCKED, i, pushCount);
+                }
+                if( checkCase && !upper ) {
+                    return fail(WRONG_CASE, i, pushCount);
+                }
+                cells[next] = (byte) (target & ~BOX);
+                cells[beyond] = (byte) (landing | BOX);
+                offGoal += ((target & GOAL) != 0 ? 1 : 0) - ((landing & GOAL) != 0 ? 1 : 0);
+                pushCount++;
+            } else if( checkCase && upper ) {
+                return fail(WRONG_CASE, i, pushCount);
+            }
+            player = next;
+        }
+
+        moves = length;
+        pushes = pushCount;
+        if( offGoal != 0 ) {
+            failedAt = length;
+            return NOT_SOLVED;
+        }
+        return VALID;
+    }
+
+    private int fail( int result, int index, int pushCount ) {
+        failedAt = index;
+        moves = index;
+        pushes = pushCount;
+        return result;
+    }
+
+    /*|************************************************************
+                               Results
+    ***************************************************************/
+    /**
+        ` Index of the move the last replay failed on ( the length for NOT_SOLVED ), or -1.
+    */
+    public int failedAt() {
+        return failedAt;
+    }
+
+    /**
+        ` Moves and pushes the last replay applied before it ended or failed.
+    */
+    public int moves() {
+        return moves;
+    }
+
+    public int pushes() {
+        return pushes;
+    }
+
+    public static String describe( int result ) {
+        return DESCRIPTIONS[result];
+    }
+}
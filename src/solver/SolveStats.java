@@ -0,0 +1,162 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+    ` Counters from one solve. Searches fill in what applies to them; SokoBot keeps the stats
+    of the last solve.
+*/
+public class SolveStats {
+
+    public String mode;
+    public long millis;
+    public boolean solved;
+    public int solutionLength;
+    public boolean limitReached;    // stopped by the time or expansion limit
+
+    // - Search effort
+    public long expanded;
+    public long generated;
+
+    // - Optimal modes: closed states reopened for a cheaper path, and edges that broke the
+    //   consistency of the heuristic ( both 0 while the fast path holds )
+    public long reopened;
+    public long inconsistentEdges;
+
+    // - Closed set
+    public long closedStates;
+    public double closedBytesPerState;
+    public double closedLoadFactor;
+    public double expectedOmissions;    // bitstate closed set: states estimated to be dropped
+    public double omissionProbability;  // and the chance that any was
+
+    // - Push-level node store: the arrays kept for every generated node and the box lists of the
+    //   open nodes, which the closed set figures leave out
+    public long nodeStoreBytes;
+
+    // - Heuristic cache
+    public long heuristicHits;
+    public long heuristicMisses;
+    public long heuristicEvictions;
+
+    // - Checkpoints: how many were written, the time spent on them, and the size of the last one
+    public int checkpoints;
+    public long checkpointMillis;
+    public long checkpointBytes;
+
+    // - Decompose mode: rooms found, subproblems solved or tried, and how many of them were coupled
+    public int rooms;
+    public int subproblems;
+    public int coupledSubproblems;
+
+    // - Walking distance table: time to build it, its size, and rows filled on demand ( lazy table )
+    public long walkTableMillis;
+    public long walkTableBytes;
+    public long walkTableRows;
+
+    // - Memory pressure: the beam width in the end ( 0 when no beam ran ), and one note for each
+    //   time the MemoryWatch made a search shrink or hand over
+    public int beamWidth;
+    public List<String> triggers = new ArrayList<>();
+
+    // - Limits of the running solve
+    private long deadline = 0;
+    private long maxExpansions = 0;
+
+    /**
+        ` Starts the clock for the limits in the config.
+    */
+    public void startClock( SolverConfig config ) {
+        deadline = config.timeLimitMillis > 0 ? System.nanoTime() + config.timeLimitMillis * 1000000L : 0;
+        maxExpansions = config.maxExpansions;
+    }
+
+    /**
+        ` Checked by the searches as they go; true once a limit is passed.
+    */
+    public boolean overLimit() {
+        if( (maxExpansions > 0 && expanded >= maxExpansions) || (deadline != 0 && System.nanoTime() - deadline > 0) ) {
+            limitReached = true;
+        }
+        return limitReached;
+    }
+
+    /**
+        ` Copies the figures of a closed set.
+    */
+    public void recordClosedSet( ClosedSet closed ) {
+        closedStates = closed.size();
+        closedBytesPerState = closed.bytesPerState();
+        closedLoadFactor = closed.loadFactor();
+        if( closed instanceof BitstateClosedSet ) {
+            expectedOmissions = ((BitstateClosedSet) closed).expectedOmissions();
+            omissionProbability = ((BitstateClosedSet) closed).omissionProbability();
+        }
+    }
+
+    /**
+        ` Copies the figures of a walking distance table.
+    */
+    public void recordWalkTable( WalkTable table ) {
+        walkTableBytes = table.bytesUsed();
+        walkTableRows = table.rowsFilled();
+    }
+
+    /**
+        ` Copies the counters of a heuristic cache.
+    */
+    public void recordHeuristicCache( HeuristicCache cache ) {
+        heuristicHits = cache.hits();
+        heuristicMisses = cache.misses();
+        heuristicEvictions = cache.evictions();
+    }
+
+    @Override public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("mode %s, %s in %d ms", mode,
+            solved ? solutionLength + " moves" : limitReached ? "limit reached" : "no solution", millis));
+        if( expanded > 0 ) {
+            text.append(String.format(", %d expanded, %d generated", expanded, generated));
+        }
+        if( reopened + inconsistentEdges > 0 ) {
+            text.append(String.format(", %d reopened, %d inconsistent edges", reopened, inconsistentEdges));
+        }
+        if( closedStates > 0 ) {
+            text.append(String.format(", closed %d states at %.1f B/state, load %.2f",
+                closedStates, closedBytesPerState, closedLoadFactor));
+            if( expectedOmissions > 0 ) {
+                text.append(String.format(" ( bitstate: %.2g states dropped expected, p( any ) %.2g )",
+                    expectedOmissions, omissionProbability));
+            }
+            if( nodeStoreBytes > 0 ) {
+                double nodeBytes = nodeStoreBytes / (double) closedStates;
+                text.append(String.format(", node store %.1f B/state ( %.1f B/state in all )",
+                    nodeBytes, nodeBytes + closedBytesPerState));
+            }
+        }
+        if( heuristicHits + heuristicMisses > 0 ) {
+            text.append(String.format(", heuristic cache %.1f%% hits, %d evictions",
+                100.0 * heuristicHits / (heuristicHits + heuristicMisses), heuristicEvictions));
+        }
+        if( checkpoints > 0 ) {
+            text.append(String.format(", %d checkpoints in %d ms, last %d bytes", checkpoints, checkpointMillis, checkpointBytes));
+        }
+        if( subproblems > 0 ) {
+            text.append(String.format(", %d rooms, %d subproblems ( %d coupled )", rooms, subproblems, coupledSubproblems));
+        }
+        if( walkTableBytes > 0 ) {
+            text.append(String.format(", walk table %.1f KB in %d ms", walkTableBytes / 1024.0, walkTableMillis));
+            if( walkTableRows > 0 ) {
+                text.append(String.format(" ( %d rows filled lazily )", walkTableRows));
+            }
+        }
+        if( beamWidth > 0 ) {
+            text.append(String.format(", beam width %d", beamWidth));
+        }
+        for( String trigger : triggers ) {
+            text.append(", ").append(trigger);
+        }
+        return text.toString();
+    }
+}
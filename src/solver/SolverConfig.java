@@ -0,0 +1,133 @@
+package solver;
+
+/**
+    ` Options for SokoBot. The defaults reproduce the original move-level A* search, so callers
+    that do not pass a config see no change.
+*/
+public class SolverConfig implements Cloneable {
+
+    /*|************************************************************
+                                Modes
+    ***************************************************************/
+    public static final String MODE_ASTAR = "astar";                     // move-level A* over State
+    public static final String MODE_PUSH_ASTAR = "push-astar";           // push-level A*, compact closed set
+    public static final String MODE_GREEDY = "greedy";                   // push-level greedy best-first
+    public static final String MODE_EXTERNAL_BFS = "external-bfs";       // disk-backed push-level BFS
+    public static final String MODE_EXTERNAL_ASTAR = "external-astar";   // disk-backed push-level A*
+    public static final String MODE_DISTRIBUTED = "distributed";         // push-level BFS over worker processes
+    public static final String MODE_BEAM = "beam";                       // push-level beam search, not optimal
+    public static final String MODE_DECOMPOSE = "decompose";             // one goal at a time, not optimal
+    public static final String MODE_OPTIMAL_MOVES = "optimal-moves";     // fewest moves, provably
+    public static final String MODE_OPTIMAL_PUSHES = "optimal-pushes";   // fewest pushes, provably
+    public static final String MODE_TUNED = "tuned";                     // the Autotuner's profile for the level
+
+    public static final String[] MODES = { MODE_ASTAR, MODE_PUSH_ASTAR, MODE_GREEDY, MODE_EXTERNAL_BFS,
+        MODE_EXTERNAL_ASTAR, MODE_DISTRIBUTED, MODE_BEAM, MODE_DECOMPOSE, MODE_OPTIMAL_MOVES, MODE_OPTIMAL_PUSHES,
+        MODE_TUNED };
+
+    /*|************************************************************
+                              Attributes
+    ***************************************************************/
+    public String mode = MODE_ASTAR;
+
+    // - Limits: a search gives up ( no solution, SolveStats.limitReached ) after this many
+    //   milliseconds or expansions; 0 means no limit
+    public long timeLimitMillis = 0;
+    public long maxExpansions = 0;
+
+    // - Push-astar and greedy: memory for a bitstate closed set, which keeps a few bits per state
+    //   instead of the state and may drop some states as seen ( 0 keeps the exact closed set )
+    public long bitstateBytes = 0;
+
+    // - Slots of the heuristic memo keyed by box configuration, 13 bytes each ( 0 turns it off )
+    public int heuristicCacheSlots = 1 << 16;
+
+    // - Memory for the table of walking distances between floor squares. The full table is built at
+    //   load when it fits, otherwise rows are computed as needed and cached up to this size
+    //   ( 0 keeps the Manhattan distances ). The move-level A* never uses it: its answers depend on
+    //   the heuristic, and the default mode gives the same solutions as before the table
+    public long walkTableBytes = 64L << 20;
+
+    // - Search control. Inertia breaks ties towards pushing the same box on in the same direction.
+    //   Relevance cuts drop a push when the pushes before it already moved away from the last
+    //   pushed box this many times in a row ( 0 is off, 1 the strictest ); a box counts as near
+    //   when it is within relevanceRadius steps of it. A search the cuts left without a solution
+    //   is run again without them.
+    public boolean inertia = true;
+    public int relevanceCuts = 0;
+    public int relevanceRadius = 2;
+
+    // - Beam mode: successors kept per push layer. When more than memoryThreshold of the maximum
+    //   heap is in use, the beam halves its width and the in-memory searches hand over to a beam
+    //   ( 0 turns the watch off )
+    public int beamWidth = 1000;
+    public double memoryThreshold = 0.8;
+
+    // - Decompose mode: the most boxes a coupled subproblem may hold, and the expansions one
+    //   subproblem may use before it counts as failed
+    public int subproblemBoxes = 3;
+    public long subproblemExpansions = 20000;
+
+    // - Tuned mode: the profiles the Autotuner wrote, one per cluster of similar levels
+    public String profileFile = "tuning-profiles.txt";
+
+    // - Hints in free play: expansions of the local search from a position off the known paths
+    //   before a full search takes over
+    public long hintExpansions = 5000;
+
+    // - External modes: heap used for sorting runs, and where the run / layer files go
+    //   ( null means a fresh temporary directory that is deleted afterwards )
+    public long bufferBytes = 64L << 20;
+    public String workDirectory = null;
+
+    // - Push-level modes: file the search is checkpointed to every checkpointSeconds ( null for
+    //   none ), and that SokoBot.resumeSokobanPuzzle carries on from
+    public String checkpointFile = null;
+    public int checkpointSeconds = 300;
+
+    // - Distributed mode: number of workers, whether to start them as local processes ( or wait
+    //   for workers started by hand ), the coordinator's port ( 0 picks a free one ), and how
+    //   many states go into one message between workers
+    public int workers = 2;
+    public boolean spawnWorkers = true;
+    public int coordinatorPort = 0;
+    public int batchStates = 4096;
+
+    // - Where the search publishes snapshots of its best state while it runs ( null for none )
+    public SearchProgress progress = null;
+
+    // - Whether SokoBot prints the solution it returns ( off when many solves share one console )
+    public boolean printSolution = true;
+
+    /**
+        ` Sets one option by its field name, as tuning profiles name them. Returns false for a
+        name that is not a tunable option.
+    */
+    public boolean set( String name, String value ) {
+        switch( name ) {
+            case "mode": mode = value; break;
+            case "inertia": inertia = Boolean.parseBoolean(value); break;
+            case "relevanceCuts": relevanceCuts = Integer.parseInt(value); break;
+            case "relevanceRadius": relevanceRadius = Integer.parseInt(value); break;
+            case "heuristicCacheSlots": heuristicCacheSlots = Integer.parseInt(value); break;
+            case "walkTableBytes": walkTableBytes = Long.parseLong(value); break;
+            case "bitstateBytes": bitstateBytes = Long.parseLong(value); break;
+            case "beamWidth": beamWidth = Integer.parseInt(value); break;
+            case "subproblemBoxes": subproblemBoxes = Integer.parseInt(value); break;
+            case "subproblemExpansions": subproblemExpansions = Long.parseLong(value); break;
+            default: return false;
+        }
+        return true;
+    }
+
+    /**
+        ` A field-by-field copy, for per-level changes such as a time budget.
+    */
+    public SolverConfig copy() {
+        try {
+            return (SolverConfig) clone();
+        } catch( CloneNotSupportedException ex ) {
+            throw new AssertionError(ex);
+        }
+    }
+}
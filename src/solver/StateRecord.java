@@ -0,0 +1,154 @@
+package solver;
+
+/**
+    ` Fixed-width packing of a push-level state into longs, used wherever states leave the
+    heap as flat data. Cells fit in 14 bits ( the 100x100 board limit ), four to a long, player
+    first and then the sorted boxes. Records compare as plain signed longs in order, which keeps
+    sorting and merging of record files simple.
+*/
+public class StateRecord {
+
+    protected static final int CELL_BITS = 14;
+    protected static final int CELLS_PER_LONG = 4;
+    private static final long CELL_MASK = (1L << CELL_BITS) - 1;
+
+    /**
+        ` Number of longs a record with the given number of boxes takes.
+    */
+    public static int longs( int boxCount ) {
+        return (boxCount + 1 + CELLS_PER_LONG - 1) / CELLS_PER_LONG;
+    }
+
+    public static void pack( int player, int[] boxes, long[] dest, int offset ) {
+        int length = longs(boxes.length);
+        for( int i = 0; i < length; i++ ) {
+            dest[offset + i] = 0L;
+        }
+
+        for( int i = 0; i <= boxes.length; i++ ) {
+            long cell = i == 0 ? player : boxes[i - 1];
+            dest[offset + i / CELLS_PER_LONG] |= cell << (CELL_BITS * (i % CELLS_PER_LONG));
+        }
+    }
+
+    /**
+        ` Reads a record back into `boxesOut`, which must have the original box count.
+
+        @return the player cell
+    */
+    public static int unpack( long[] src, int offset, int[] boxesOut ) {
+        for( int i = 1; i <= boxesOut.length; i++ ) {
+            boxesOut[i - 1] = cell(src, offset, i);
+        }
+        return cell(src, offset, 0);
+    }
+
+    private static int cell( long[] src, int offset, int i ) {
+        return (int) ((src[offset + i / CELLS_PER_LONG] >>> (CELL_BITS * (i % CELLS_PER_LONG))) & CELL_MASK);
+    }
+
+    public static int compare( long[] a, int aOffset, long[] b, int bOffset, int length ) {
+        for( int i = 0; i < length; i++ ) {
+            int result = Long.compare(a[aOffset + i], b[bOffset + i]);
+            if( result != 0 ) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    /*|************************************************************
+                            Record Sorting
+    ***************************************************************/
+    /**
+        ` Sorts `count` records in place and drops repeated states. Each record is `prefix`
+        longs of extra data ( such as g ) followed by `stateLongs` longs of packed state; records
+        are ordered by state and then by prefix, so the first copy of a state kept is the one
+        with the smallest prefix.
+
+        @return the number of records left
+    */
+    public static int sortUnique( long[] data, int count, int prefix, int stateLongs ) {
+        int length = prefix + stateLongs;
+        long[] swap = new long[length];
+        quickSort(data, 0, count - 1, prefix, length, swap);
+
+        int kept = 0;
+        for( int i = 0; i < count; i++ ) {
+            if( kept > 0 && compare(data, (kept - 1) * length + prefix, data, i * length + prefix, stateLongs) == 0 ) {
+                continue;
+            }
+            if( kept != i ) {
+                System.arraycopy(data, i * length, data, kept * length, length);
+            }
+            kept++;
+        }
+        return kept;
+    }
+
+    /**
+        ` Orders two whole records: state part first, then prefix.
+    */
+    public static int compareRecords( long[] a, int aOffset, long[] b, int bOffset, int prefix, int length ) {
+        int result = compare(a, aOffset + prefix, b, bOffset + prefix, length - prefix);
+        if( result == 0 ) {
+            result = compare(a, aOffset, b, bOffset, prefix);
+        }
+        return result;
+    }
+
+    private static int order( long[] data, int a, int b, int prefix, int length ) {
+        return compareRecords(data, a * length, data, b * length, prefix, length);
+    }
+
+    private static void quickSort( long[] data, int low, int high, int prefix, int length, long[] swap ) {
+        while( low < high ) {
+            if( high - low < 16 ) {
+                for( int i = low + 1; i <= high; i++ ) {
+                    for( int j = i; j > low && order(data, j - 1, j, prefix, length) > 0; j-- ) {
+                        swapRecords(data, j - 1, j, length, swap);
+                    }
+                }
+                return;
+            }
+
+            // - Median of three pivot, left at the end
+            int mid = (low + high) >>> 1;
+            if( order(data, mid, low, prefix, length) < 0 ) {
+                swapRecords(data, mid, low, length, swap);
+            }
+            if( order(data, high, low, prefix, length) < 0 ) {
+                swapRecords(data, high, low, length, swap);
+            }
+            if( order(data, mid, high, prefix, length) < 0 ) {
+                swapRecords(data, mid, high, length, swap);
+            }
+
+            int store = low;
+            for( int i = low; i < high; i++ ) {
+                if( order(data, i, high, prefix, length) < 0 ) {
+                    swapRecords(data, i, store++, length, swap);
+                }
+            }
+            swapRecords(data, store, high, length, swap);
+
+            // - Recurse into the smaller half to bound the stack
+            if( store - low < high - store ) {
+                quickSort(data, low, store - 1, prefix, length, swap);
+                low = store + 1;
+            } else {
+                quickSort(data, store + 1, high, prefix, length, swap);
+                high = store - 1;
+            }
+        }
+    }
+
+    private static void swapRecords( long[] data, int a, int b, int length, long[] swap ) {
+        if( a == b ) {
+            return;
+        }
+        System.arraycopy(data, a * length, swap, 0, length);
+        System.arraycopy(data, b * length, data, a * length, length);
+        System.arraycopy(swap, 0, data, b * length, length);
+    }
+}
@@ -0,0 +1,272 @@
+package solver;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+    ` Shortest walking distances between every pair of floor cells, boxes ignored. Floor cells
+    get dense indices, and the distances from one cell form a row of a floor * floor matrix,
+    stored as unsigned bytes when no walk can reach 255 steps and as unsigned shorts otherwise.
+    The unsigned maximum marks cells that cannot reach each other.
+
+    When the whole matrix fits in maxBytes, it is filled at level load with one BFS per floor
+    cell, split over the common fork/join pool. Bigger boards keep as many rows as fit and fill
+    them on demand, evicting the oldest row once the cache is full; the lazy table is not safe
+    for use from several threads, the full one is.
+*/
+public class WalkTable {
+
+    private static final int SOURCES_PER_TASK = 32;
+
+    /*|************************************************************
+                              Attributes
+    ***************************************************************/
+    private final Board board;
+    private final int[] floorIndex;       // dense index per cell, -1 off the floor
+    private final int[] floorCell;        // cell per dense index
+    private final int floorCount;
+    private final boolean wide;           // rows are shorts, not bytes
+    private final int unreachable;
+
+    // - Full matrix, one of the two set
+    private byte[] narrowMatrix;
+    private short[] wideMatrix;
+
+    // - Lazy rows: slot per source ( -1 when not cached ), sources per slot, oldest slot next
+    private int[] slotOf;
+    private int[] sourceOf;
+    private byte[][] narrowRows;
+    private short[][] wideRows;
+    private int nextSlot = 0;
+    private int[] lazyQueue;
+    private long rowsFilled = 0;
+
+    /*|************************************************************
+                          Constructor Methods
+    ***************************************************************/
+    /**
+        @param maxBytes    memory the distances may take; the full matrix is built if it fits
+    */
+    public WalkTable( Board board, long maxBytes ) {
+        this.board = board;
+        this.floorIndex = new int[board.size];
+        Arrays.fill(floorIndex, -1);
+        int count = 0;
+        for( int cell = 0; cell < board.size; cell++ ) {
+            if( board.floor[cell] ) {
+                floorIndex[cell] = count++;
+            }
+        }
+        this.floorCount = count;
+        this.floorCell = new int[count];
+        for( int cell = 0; cell < board.size; cell++ ) {
+            if( floorIndex[cell] >= 0 ) {
+                floorCell[floorIndex[cell]] = cell;
+            }
+        }
+
+        this.wide = count > 255;
+        this.unreachable = wide ? 0xffff : 0xff;
+        long rowBytes = (long) count * (wide ? 2 : 1);
+
+        if( rowBytes * count <= maxBytes ) {
+            if( wide ) {
+                wideMatrix = new short[count * count];
+            } else {
+                narrowMatrix = new byte[count * count];
+            }
+            if( count > 0 ) {
+                ForkJoinPool.commonPool().invoke(new FillTask(0, count));
+            }
+        } else {
+            int slots = (int) Math.max(1, Math.min(count, maxBytes / Math.max(1, rowBytes)));
+            slotOf = new int[count];
+            Arrays.fill(slotOf, -1);
+            sourceOf = new int[slots];
+            Arrays.fill(sourceOf, -1);
+            lazyQueue = new int[count];
+            if( wide ) {
+                wideRows = new short[slots][];
+            } else {
+                narrowRows = new byte[slots][];
+            }
+        }
+    }
+
+    /*|************************************************************
+                                Lookups
+    ***************************************************************/
+    /**
+        ` Fewest steps from one cell to another around the walls, or Integer.MAX_VALUE when
+        either is not floor or they are not connected.
+    */
+    public int distance( int from, int to ) {
+        if( from < 0 || to < 0 || from >= board.size || to >= board.size ) {
+            return Integer.MAX_VALUE;
+        }
+        int source = floorIndex[from];
+        int target = floorIndex[to];
+        if( source < 0 || target < 0 ) {
+            return Integer.MAX_VALUE;
+        }
+
+        int value;
+        if( narrowMatrix != null ) {
+            value = narrowMatrix[source * floorCount + target] & 0xff;
+        } else if( wideMatrix != null ) {
+            value = wideMatrix[source * floorCount + target] & 0xffff;
+        } else {
+            int slot = row(target);     // distances are symmetric, so the row of `to` will do
+            value = wide ? wideRows[slot][source] & 0xffff : narrowRows[slot][source] & 0xff;
+        }
+        return value == unreachable ? Integer.MAX_VALUE : value;
+    }
+
+    /**
+        ` A direction whose step from `from` gets one closer to `to` and does not land on a box,
+        or -1 when there is none ( a box blocks every shortest walk, or `to` was reached ).
+    */
+    public int stepToward( int from, int to, boolean[] boxAt ) {
+        int remaining = distance(from, to);
+        if( remaining == 0 || remaining == Integer.MAX_VALUE ) {
+            return -1;
+        }
+        for( int i = 0; i < 4; i++ ) {
+            int next = from + board.offset[i];
+            if( board.isFloor(next) && !boxAt[next] && distance(next, to) == remaining - 1 ) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*|************************************************************
+                               Counters
+    ***************************************************************/
+    public boolean isLazy() {
+        return slotOf != null;
+    }
+
+    public int floorCount() {
+        return floorCount;
+    }
+
+    /**
+        ` Rows computed on demand so far; 0 for the full matrix.
+    */
+    public long rowsFilled() {
+        return rowsFilled;
+    }
+
+    public long bytesUsed() {
+        if( narrowMatrix != null ) {
+            return narrowMatrix.length;
+        }
+        if( wideMatrix != null ) {
+            return wideMatrix.length * 2L;
+        }
+        return (long) sourceOf.length * floorCount * (wide ? 2 : 1) + slotOf.length * 4L;
+    }
+
+    /*|************************************************************
+                              Filling
+    ***************************************************************/
+    /**
+        ` The slot holding the row of one source, filling it first if needed.
+    */
+    private int row( int source ) {
+        int slot = slotOf[source];
+        if( slot >= 0 ) {
+            return slot;
+        }
+
+        slot = nextSlot;
+        nextSlot = (nextSlot + 1) % sourceOf.length;
+        if( sourceOf[slot] >= 0 ) {
+            slotOf[sourceOf[slot]] = -1;
+        }
+        sourceOf[slot] = source;
+        slotOf[source] = slot;
+
+        if( wide ) {
+            if( wideRows[slot] == null ) {
+                wideRows[slot] = new short[floorCount];
+            }
+            fill(source, wideRows[slot], null, 0, lazyQueue);
+        } else {
+            if( narrowRows[slot] == null ) {
+                narrowRows[slot] = new byte[floorCount];
+            }
+            fill(source, null, narrowRows[slot], 0, lazyQueue);
+        }
+        rowsFilled++;
+        return slot;
+    }
+
+    /**
+        ` BFS from one floor cell over the floor, writing its distances at `base` of whichever
+        array is given.
+    */
+    private void fill( int source, short[] wideOut, byte[] narrowOut, int base, int[] queue ) {
+        if( wideOut != null ) {
+            Arrays.fill(wideOut, base, base + floorCount, (short) unreachable);
+            wideOut[base + source] = 0;
+        } else {
+            Arrays.fill(narrowOut, base, base + floorCount, (byte) unreachable);
+            narrowOut[base + source] = 0;
+        }
+
+        int head = 0, tail = 0;
+        queue[tail++] = source;
+        while( head < tail ) {
+            int curr = queue[head++];
+            int cell = floorCell[curr];
+            int next = (wideOut != null ? wideOut[base + curr] & 0xffff : narrowOut[base + curr] & 0xff) + 1;
+            for( int i = 0; i < 4; i++ ) {
+                int neighbor = cell + board.offset[i];
+                if( !board.isFloor(neighbor) ) {
+                    continue;
+                }
+                int index = floorIndex[neighbor];
+                if( wideOut != null ) {
+                    if( (wideOut[base + index] & 0xffff) == unreachable ) {
+                        wideOut[base + index] = (short) next;
+                        queue[tail++] = index;
+                    }
+                } else if( (narrowOut[base + index] & 0xff) == unreachable ) {
+                    narrowOut[base + index] = (byte) next;
+                    queue[tail++] = index;
+                }
+            }
+        }
+    }
+
+    /**
+        ` Fills the rows of sources [from, to) of the full matrix, splitting the range in halves
+        until it is small enough for one task.
+    */
+    private class FillTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        FillTask( int from, int to ) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override protected void compute() {
+            if( to - from > SOURCES_PER_TASK ) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new FillTask(from, middle), new FillTask(middle, to));
+                return;
+            }
+            int[] queue = new int[floorCount];
+            for( int source = from; source < to; source++ ) {
+                fill(source, wideMatrix, narrowMatrix, source * floorCount, queue);
+            }
+        }
+    }
+}